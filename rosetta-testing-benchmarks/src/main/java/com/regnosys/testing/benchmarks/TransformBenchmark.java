@@ -0,0 +1,79 @@
+package com.regnosys.testing.benchmarks;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.regnosys.rosetta.common.validation.ValidationReport;
+import com.rosetta.model.lib.RosettaModelObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks each stage of running a transform sample separately, so a regression can be attributed to the
+ * function itself rather than to reference resolution, serialisation or validation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransformBenchmark {
+
+    @Benchmark
+    public RosettaModelObject parse(TransformBenchmarkState state) throws Exception {
+        return state.parse();
+    }
+
+    @Benchmark
+    public RosettaModelObject resolveReferences(TransformBenchmarkState state) {
+        return state.resolveReferences();
+    }
+
+    @Benchmark
+    public RosettaModelObject evaluate(TransformBenchmarkState state) {
+        return state.evaluate();
+    }
+
+    @Benchmark
+    public String serialise(TransformBenchmarkState state) throws Exception {
+        return state.serialise();
+    }
+
+    @Benchmark
+    public ValidationReport validateType(TransformBenchmarkState state) {
+        return state.typeValidator.runProcessStep(state.output.getType(), state.output);
+    }
+
+    /**
+     * Only run by {@link TransformBenchmarkRunner} for the samples of pipelines with a schema, see
+     * {@link TransformBenchmarkState#XSD_SCHEMA_PROPERTY_PREFIX}.
+     */
+    @Benchmark
+    public boolean validateSchema(TransformBenchmarkState state) {
+        return state.xsdValidator.validate(state.serialisedOutput);
+    }
+}
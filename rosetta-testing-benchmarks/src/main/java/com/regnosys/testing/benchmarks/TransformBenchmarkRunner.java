@@ -0,0 +1,130 @@
+package com.regnosys.testing.benchmarks;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.regnosys.rosetta.common.transform.PipelineModel;
+import com.regnosys.rosetta.common.transform.TestPackModel;
+import com.regnosys.testing.transform.TransformConfigIndex;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static com.regnosys.testing.benchmarks.TransformBenchmarkState.*;
+
+/**
+ * Runs {@link TransformBenchmark} once per sample of the pipelines and test packs found under the config path, e.g.
+ * <pre>
+ * java -cp benchmarks.jar:model.jar \
+ *     -Dbenchmark.config.path=regulatory-reporting/config \
+ *     -Dbenchmark.runtime.module=com.example.RuntimeModule \
+ *     -Dbenchmark.pipeline.regex=pipeline-.* \
+ *     -Dbenchmark.xsd.schema.pipeline-projection-example=schemas/example.xsd \
+ *     com.regnosys.testing.benchmarks.TransformBenchmarkRunner -rf json
+ * </pre>
+ * Any arguments are passed to JMH as standard command line options. Schema validation is benchmarked in a second run,
+ * only for the samples of pipelines with an XSD schema set, and its results written to a result file with the suffix
+ * "-schema".
+ */
+public class TransformBenchmarkRunner {
+
+    public static final String PIPELINE_REGEX_PROPERTY = "benchmark.pipeline.regex";
+
+    private static final String BENCHMARK_PROPERTY_PREFIX = "benchmark.";
+    private static final String VALIDATE_SCHEMA_BENCHMARK = TransformBenchmark.class.getName() + ".validateSchema";
+
+    public static void main(String[] args) throws Exception {
+        Path configPath = Path.of(getRequiredProperty(CONFIG_PATH_PROPERTY));
+        Pattern pipelineRegex = Pattern.compile(System.getProperty(PIPELINE_REGEX_PROPERTY, ".*"));
+
+        TransformConfigIndex index = TransformConfigIndex.get(configPath, TransformBenchmarkRunner.class.getClassLoader());
+        List<PipelineModel> pipelineModels = index.getPipelineModels().stream()
+                .filter(p -> pipelineRegex.matcher(p.getId()).matches())
+                .collect(Collectors.toList());
+        String[] sampleKeys = getSampleKeys(index, pipelineModels);
+        if (sampleKeys.length == 0) {
+            throw new IllegalArgumentException("No samples found for pipelines matching " + pipelineRegex + " under " + configPath);
+        }
+
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        new Runner(createOptions(commandLineOptions, sampleKeys)
+                .exclude(VALIDATE_SCHEMA_BENCHMARK)
+                .build()).run();
+
+        // the schema is set per pipeline, so schema validation is only run for the samples of pipelines with one
+        String[] schemaSampleKeys = getSampleKeys(index, pipelineModels.stream()
+                .filter(p -> getXsdSchema(p.getId()).isPresent())
+                .collect(Collectors.toList()));
+        if (schemaSampleKeys.length > 0) {
+            ChainedOptionsBuilder schemaOptions = createOptions(commandLineOptions, schemaSampleKeys)
+                    .include(VALIDATE_SCHEMA_BENCHMARK);
+            if (commandLineOptions.getResultFormat().hasValue()) {
+                // written to a separate result file, rather than overwriting the results of the other benchmarks
+                String resultFile = commandLineOptions.getResult()
+                        .orElse("jmh-result." + commandLineOptions.getResultFormat().get().toString().toLowerCase());
+                schemaOptions.result(withSuffix(resultFile, "-schema"));
+            }
+            new Runner(schemaOptions.build()).run();
+        }
+    }
+
+    private static ChainedOptionsBuilder createOptions(CommandLineOptions commandLineOptions, String[] sampleKeys) {
+        return new OptionsBuilder()
+                .parent(commandLineOptions)
+                .include(TransformBenchmark.class.getName())
+                .param("sample", sampleKeys)
+                .jvmArgsAppend(getForwardedProperties());
+    }
+
+    private static String[] getSampleKeys(TransformConfigIndex index, List<PipelineModel> pipelineModels) {
+        List<String> sampleKeys = new ArrayList<>();
+        for (PipelineModel pipelineModel : pipelineModels) {
+            for (TestPackModel testPackModel : index.getTestPackModels(pipelineModel.getId())) {
+                for (TestPackModel.SampleModel sampleModel : testPackModel.getSamples()) {
+                    sampleKeys.add(toSampleKey(pipelineModel.getId(), testPackModel.getId(), sampleModel.getId()));
+                }
+            }
+        }
+        return sampleKeys.toArray(new String[0]);
+    }
+
+    private static String withSuffix(String fileName, String suffix) {
+        int extension = fileName.lastIndexOf('.');
+        return extension < 0 ? fileName + suffix : fileName.substring(0, extension) + suffix + fileName.substring(extension);
+    }
+
+    /**
+     * Benchmarks run in a forked JVM, so the properties that select the model and schemas are passed on.
+     */
+    private static String[] getForwardedProperties() {
+        return System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(BENCHMARK_PROPERTY_PREFIX))
+                .sorted()
+                .map(name -> "-D" + name + "=" + System.getProperty(name))
+                .toArray(String[]::new);
+    }
+}
@@ -0,0 +1,178 @@
+package com.regnosys.testing.benchmarks;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.io.Resources;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.regnosys.rosetta.common.hashing.ReferenceConfig;
+import com.regnosys.rosetta.common.hashing.ReferenceResolverProcessStep;
+import com.regnosys.rosetta.common.serialisation.RosettaObjectMapper;
+import com.regnosys.rosetta.common.transform.PipelineModel;
+import com.regnosys.rosetta.common.transform.TestPackModel;
+import com.regnosys.rosetta.common.transform.TestPackUtils;
+import com.regnosys.rosetta.common.validation.RosettaTypeValidator;
+import com.regnosys.testing.InjectorRegistry;
+import com.regnosys.testing.transform.TransformConfigIndex;
+import com.regnosys.testing.transform.TransformFunctionFactory;
+import com.regnosys.testing.validation.XsdValidationService;
+import com.rosetta.model.lib.RosettaModelObject;
+import com.rosetta.model.lib.RosettaModelObjectBuilder;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * One sample of a pipeline, loaded once per trial. The sample is selected by the {@link #sample} param, in the
+ * format written by {@link #toSampleKey}, and the transform function is created from the runtime module and config
+ * path set by system properties. The output is validated against the XSD schema of the pipeline, if one is set.
+ */
+@State(Scope.Benchmark)
+public class TransformBenchmarkState {
+
+    public static final String CONFIG_PATH_PROPERTY = "benchmark.config.path";
+    public static final String RUNTIME_MODULE_PROPERTY = "benchmark.runtime.module";
+    /**
+     * Prefix of the property that sets the XSD schema resource of a pipeline, followed by the pipeline id, e.g.
+     * "benchmark.xsd.schema.pipeline-projection-example".
+     */
+    public static final String XSD_SCHEMA_PROPERTY_PREFIX = "benchmark.xsd.schema.";
+
+    private static final String SAMPLE_KEY_SEPARATOR = " | ";
+
+    private static final ObjectMapper JSON_OBJECT_MAPPER = RosettaObjectMapper.getNewRosettaObjectMapper();
+
+    private static final ObjectWriter JSON_OBJECT_WRITER =
+            RosettaObjectMapper.getNewRosettaObjectMapper()
+                    .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+                    .writerWithDefaultPrettyPrinter();
+
+    public static String toSampleKey(String pipelineId, String testPackId, String sampleId) {
+        return String.join(SAMPLE_KEY_SEPARATOR, pipelineId, testPackId, sampleId);
+    }
+
+    @Param("")
+    public String sample;
+
+    Function<RosettaModelObject, RosettaModelObject> function;
+    ObjectWriter outputObjectWriter;
+    RosettaTypeValidator typeValidator;
+    ReferenceConfig referenceConfig;
+    XsdValidationService xsdValidator;
+
+    byte[] inputBytes;
+    Class<? extends RosettaModelObject> inputType;
+    RosettaModelObject input;
+    RosettaModelObject resolvedInput;
+    RosettaModelObject output;
+    String serialisedOutput;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String[] sampleKey = sample.split(" \\| ", 3);
+        if (sampleKey.length != 3) {
+            throw new IllegalArgumentException("Expected sample param in format <pipeline id> | <test pack id> | <sample id>, but was " + sample);
+        }
+        String pipelineId = sampleKey[0];
+        String testPackId = sampleKey[1];
+        String sampleId = sampleKey[2];
+
+        ClassLoader classLoader = getClass().getClassLoader();
+        TransformConfigIndex index = TransformConfigIndex.get(Path.of(getRequiredProperty(CONFIG_PATH_PROPERTY)), classLoader);
+        PipelineModel pipelineModel = index.getPipelineModels().stream()
+                .filter(p -> pipelineId.equals(p.getId()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No pipeline found with id " + pipelineId));
+        TestPackModel.SampleModel sampleModel = index.getTestPackModel(testPackId)
+                .flatMap(testPackModel -> testPackModel.getSamples().stream()
+                        .filter(s -> sampleId.equals(s.getId()))
+                        .findFirst())
+                .orElseThrow(() -> new IllegalArgumentException("No sample found with id " + sampleId + " in test pack " + testPackId));
+
+        Module runtimeModule = (Module) Class.forName(getRequiredProperty(RUNTIME_MODULE_PROPERTY), true, classLoader)
+                .getDeclaredConstructor()
+                .newInstance();
+        Injector injector = InjectorRegistry.create(runtimeModule);
+        this.typeValidator = injector.getInstance(RosettaTypeValidator.class);
+        this.referenceConfig = injector.getInstance(ReferenceConfig.class);
+
+        PipelineModel.Transform transform = pipelineModel.getTransform();
+        this.inputType = Class.forName(transform.getInputType(), true, classLoader).asSubclass(RosettaModelObject.class);
+        Object functionInstance = injector.getInstance(Class.forName(transform.getFunction(), true, classLoader));
+        this.function = createFunction(functionInstance, inputType);
+        this.outputObjectWriter = TestPackUtils.getObjectWriter(pipelineModel.getOutputSerialisation()).orElse(JSON_OBJECT_WRITER);
+        this.xsdValidator = getXsdSchema(pipelineId)
+                .map(Resources::getResource)
+                .map(XsdValidationService::create)
+                .orElse(null);
+
+        // run the whole sample once, so each benchmark starts from the output of the previous stage
+        this.inputBytes = Resources.toByteArray(Resources.getResource(sampleModel.getInputPath()));
+        this.input = parse();
+        this.resolvedInput = resolveReferences();
+        this.output = evaluate();
+        this.serialisedOutput = serialise();
+    }
+
+    private static <IN extends RosettaModelObject> Function<RosettaModelObject, RosettaModelObject> createFunction(Object functionInstance, Class<IN> inputType) {
+        Function<IN, RosettaModelObject> function = TransformFunctionFactory.create(functionInstance, inputType);
+        return input -> function.apply(inputType.cast(input));
+    }
+
+    RosettaModelObject parse() throws Exception {
+        return JSON_OBJECT_MAPPER.readValue(inputBytes, inputType);
+    }
+
+    RosettaModelObject resolveReferences() {
+        RosettaModelObjectBuilder builder = input.toBuilder();
+        new ReferenceResolverProcessStep(referenceConfig).runProcessStep(input.getType(), builder);
+        return builder.build();
+    }
+
+    RosettaModelObject evaluate() {
+        return function.apply(resolvedInput);
+    }
+
+    String serialise() throws Exception {
+        return outputObjectWriter.writeValueAsString(output);
+    }
+
+    static Optional<String> getXsdSchema(String pipelineId) {
+        return Optional.ofNullable(System.getProperty(XSD_SCHEMA_PROPERTY_PREFIX + pipelineId));
+    }
+
+    static String getRequiredProperty(String name) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            throw new IllegalStateException("System property " + name + " must be set");
+        }
+        return value;
+    }
+}
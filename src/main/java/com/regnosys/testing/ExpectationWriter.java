@@ -0,0 +1,117 @@
+package com.regnosys.testing;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Writes expectation files concurrently, only writing files whose content has changed, so unchanged files are not
+ * touched. Each file is written to a temporary file and atomically renamed, so a file is never left half written.
+ * Files are written in the platform default charset, as test pack outputs are, see
+ * {@link com.regnosys.testing.testpack.SerialisedOutput}.
+ */
+public class ExpectationWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExpectationWriter.class);
+
+    public enum Result {
+        ADDED,
+        CHANGED,
+        UNCHANGED,
+        /**
+         * File does not exist and creating files is disabled, or there is no content to write.
+         */
+        SKIPPED,
+        FAILED
+    }
+
+    private ExpectationWriter() {
+    }
+
+    /**
+     * @param files  - content to write, keyed by file path
+     * @param create - create files that do not exist, see {@link TestingExpectationUtil#CREATE_EXPECTATION_FILES}
+     * @return the number of files with each result
+     */
+    public static Map<Result, Long> writeAll(Map<Path, String> files, boolean create) {
+        Map<Result, Long> summary = new EnumMap<>(Result.class);
+        Arrays.stream(Result.values()).forEach(r -> summary.put(r, 0L));
+        summary.putAll(files.entrySet().parallelStream()
+                .map(e -> write(e.getKey(), e.getValue(), create))
+                .collect(Collectors.groupingBy(r -> r, Collectors.counting())));
+        LOGGER.info("Expectation files added {}, changed {}, unchanged {}, skipped {}, failed {}",
+                summary.get(Result.ADDED),
+                summary.get(Result.CHANGED),
+                summary.get(Result.UNCHANGED),
+                summary.get(Result.SKIPPED),
+                summary.get(Result.FAILED));
+        return summary;
+    }
+
+    public static Result write(Path writePath, String content, boolean create) {
+        if (content == null) {
+            return Result.SKIPPED;
+        }
+        byte[] bytes = content.getBytes(Charset.defaultCharset());
+        try {
+            boolean exists = Files.exists(writePath);
+            if (!exists && !create) {
+                return Result.SKIPPED;
+            }
+            // size is checked first so most changed files are detected without reading them
+            if (exists && Files.size(writePath) == bytes.length && Arrays.equals(Files.readAllBytes(writePath), bytes)) {
+                return Result.UNCHANGED;
+            }
+            Files.createDirectories(writePath.getParent());
+            Path tempPath = Files.createTempFile(writePath.getParent(), writePath.getFileName().toString(), ".tmp");
+            try {
+                Files.write(tempPath, bytes);
+                move(tempPath, writePath);
+            } finally {
+                Files.deleteIfExists(tempPath);
+            }
+            LOGGER.debug("Wrote output to {}", writePath);
+            return exists ? Result.CHANGED : Result.ADDED;
+        } catch (IOException e) {
+            LOGGER.error("Failed to write output to {}", writePath, e);
+            return Result.FAILED;
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.regnosys.testing;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.rosetta.model.lib.reports.Tabulator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Field name templates of the report fields flattened by {@link FieldValueFlattener}, shared by every report
+ * flattened with the same {@link Tabulator}.
+ * <p>
+ * The templates are held in a trie keyed by the nested fields of the path. Each template is precompiled from the field
+ * names, with a slot for each repeatable index, e.g. "A -> B (#) -> C (#)". Names without repeatable indices are
+ * built once and shared.
+ */
+public class FieldNameTemplates {
+
+    private static final Cache<Tabulator<?>, FieldNameTemplates> TEMPLATES_BY_TABULATOR = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    /**
+     * Templates shared by every flattener of the tabulator, for as long as the tabulator is reachable.
+     */
+    public static FieldNameTemplates forTabulator(Tabulator<?> tabulator) {
+        return TEMPLATES_BY_TABULATOR.asMap().computeIfAbsent(tabulator, t -> new FieldNameTemplates());
+    }
+
+    private final Node root = new Node(null, null, false);
+
+    Node root() {
+        return root;
+    }
+
+    /**
+     * A nested field of the path, and the templates of the fields below it.
+     */
+    static final class Node {
+        private final Node parent;
+        private final String name;
+        private final boolean indexed;
+        private final Map<Tabulator.Field, Node> children = new ConcurrentHashMap<>();
+        private final Map<Tabulator.Field, Node> indexedChildren = new ConcurrentHashMap<>();
+        private final Map<Tabulator.Field, Template> templates = new ConcurrentHashMap<>();
+
+        private Node(Node parent, String name, boolean indexed) {
+            this.parent = parent;
+            this.name = name;
+            this.indexed = indexed;
+        }
+
+        /**
+         * @param indexed - whether the field is repeatable, so each element has an index
+         */
+        Node child(Tabulator.Field field, boolean indexed) {
+            return (indexed ? indexedChildren : children).computeIfAbsent(field, f -> new Node(this, f.getName(), indexed));
+        }
+
+        Template template(Tabulator.Field field) {
+            return templates.computeIfAbsent(field, this::compile);
+        }
+
+        private Template compile(Tabulator.Field field) {
+            Deque<Node> path = new ArrayDeque<>();
+            for (Node node = this; node.parent != null; node = node.parent) {
+                path.push(node);
+            }
+            TemplateBuilder builder = new TemplateBuilder();
+            // each name is indexed by the level above it, as the level above is the repeatable element it belongs to
+            int level = 0;
+            boolean previousIndexed = false;
+            for (Node node : path) {
+                builder.appendName(node.name, previousIndexed ? level - 1 : -1);
+                builder.appendLiteral(" -> ");
+                previousIndexed = node.indexed;
+                level++;
+            }
+            builder.appendName(field.getName(), previousIndexed ? level - 1 : -1);
+            String ruleId = field instanceof Tabulator.FieldImpl ?
+                    ((Tabulator.FieldImpl) field).getRuleId().map(Object::toString).orElse(null) :
+                    null;
+            return builder.build(ruleId);
+        }
+    }
+
+    /**
+     * Literal parts of a field name, separated by slots for the repeatable index of a level of the path.
+     */
+    static final class Template {
+        private final String[] literals;
+        private final int[] slotLevels;
+        private final String ruleId;
+
+        private Template(String[] literals, int[] slotLevels, String ruleId) {
+            this.literals = literals;
+            this.slotLevels = slotLevels;
+            this.ruleId = ruleId;
+        }
+
+        String fill(Integer[] indices) {
+            if (slotLevels.length == 0) {
+                return literals[0];
+            }
+            StringBuilder name = new StringBuilder(literals[0].length() + 16 * slotLevels.length);
+            name.append(literals[0]);
+            for (int i = 0; i < slotLevels.length; i++) {
+                name.append(indices[slotLevels[i]].intValue()).append(literals[i + 1]);
+            }
+            return name.toString();
+        }
+
+        String getRuleId() {
+            return ruleId;
+        }
+    }
+
+    private static final class TemplateBuilder {
+        private final List<String> literals = new ArrayList<>();
+        private final List<Integer> slotLevels = new ArrayList<>();
+        private final StringBuilder literal = new StringBuilder();
+
+        /**
+         * Appends the field name, with the index of the level replacing each "$", or appended as " (index)".
+         */
+        void appendName(String fieldName, int indexLevel) {
+            if (indexLevel < 0) {
+                literal.append(fieldName);
+            } else if (fieldName.contains("$")) {
+                String[] parts = fieldName.split("\\$", -1);
+                literal.append(parts[0]);
+                for (int i = 1; i < parts.length; i++) {
+                    appendSlot(indexLevel);
+                    literal.append(parts[i]);
+                }
+            } else {
+                literal.append(fieldName).append(" (");
+                appendSlot(indexLevel);
+                literal.append(")");
+            }
+        }
+
+        void appendLiteral(String s) {
+            literal.append(s);
+        }
+
+        private void appendSlot(int indexLevel) {
+            literals.add(literal.toString());
+            literal.setLength(0);
+            slotLevels.add(indexLevel);
+        }
+
+        Template build(String ruleId) {
+            literals.add(literal.toString());
+            return new Template(literals.toArray(new String[0]), slotLevels.stream().mapToInt(Integer::intValue).toArray(), ruleId);
+        }
+    }
+}
@@ -21,44 +21,125 @@ package com.regnosys.testing;
  */
 
 
+import com.google.common.annotations.VisibleForTesting;
 import com.regnosys.rosetta.common.reports.ReportField;
 import com.regnosys.rosetta.common.serialisation.RosettaDataValueObjectToString;
 import com.rosetta.model.lib.reports.Tabulator;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
+/**
+ * Flattens tabulated field values into report fields named by their path, e.g. "A -> B (1) -> C".
+ * <p>
+ * The path is tracked in a single reusable {@link PathStack}, and field names are filled in from the precompiled
+ * {@link FieldNameTemplates} of the path, so flattening allocates little more than the emitted report fields.
+ */
 public class FieldValueFlattener implements Tabulator.FieldValueVisitor<List<FieldValueFlattener.ParentAndIndex>> {
     public List<ReportField> accumulator = new ArrayList<>();
+    private final Consumer<ReportField> sink;
+    private final FieldNameTemplates templates;
+    private final PathStack rootPath = new PathStack();
+    private ForkJoinPool pool;
+    private int minimumParallelGroupSize;
+
+    /**
+     * Collects the report fields in {@link #accumulator}.
+     */
+    public FieldValueFlattener() {
+        this.sink = reportField -> accumulator.add(reportField);
+        this.templates = new FieldNameTemplates();
+    }
+
+    /**
+     * Collects the report fields in {@link #accumulator}, using the field name templates shared by every flattener of
+     * the tabulator.
+     */
+    public FieldValueFlattener(Tabulator<?> tabulator) {
+        this.sink = reportField -> accumulator.add(reportField);
+        this.templates = FieldNameTemplates.forTabulator(tabulator);
+    }
+
+    /**
+     * Passes each report field to the sink as it is visited, e.g. a {@link com.regnosys.testing.reports.ReportFieldSink},
+     * rather than collecting them in {@link #accumulator}.
+     */
+    public FieldValueFlattener(Consumer<ReportField> sink) {
+        this(sink, new FieldNameTemplates());
+    }
+
+    /**
+     * Passes each report field to the sink as it is visited, using the field name templates shared by every flattener
+     * of the tabulator.
+     */
+    public FieldValueFlattener(Tabulator<?> tabulator, Consumer<ReportField> sink) {
+        this(sink, FieldNameTemplates.forTabulator(tabulator));
+    }
+
+    /**
+     * @param templates - field name templates shared with the other flatteners of the same tabulator, see
+     *                  {@link FieldNameTemplates#forTabulator}
+     */
+    public FieldValueFlattener(Consumer<ReportField> sink, FieldNameTemplates templates) {
+        this.sink = sink;
+        this.templates = templates;
+    }
+
+    @VisibleForTesting
+    FieldNameTemplates getTemplates() {
+        return templates;
+    }
+
+    /**
+     * Flattens the elements of repeatable groups with at least minimumGroupSize elements in parallel on the pool. Each
+     * task flattens into its own buffer, and the buffers are passed to the sink in index order on the calling thread,
+     * so the output is the same as flattening sequentially.
+     * <p>
+     * The sink, or {@link #accumulator}, is only ever called on the thread visiting the field values, in sequential
+     * order, so it need not be thread safe. Groups nested within an element flattened in parallel are flattened
+     * sequentially by its task.
+     */
+    public FieldValueFlattener withParallelism(ForkJoinPool pool, int minimumGroupSize) {
+        this.pool = pool;
+        this.minimumParallelGroupSize = minimumGroupSize;
+        return this;
+    }
 
     @Override
     public void visitSingle(Tabulator.FieldValue fieldValue, List<ParentAndIndex> parentsAndIndices) {
         if (fieldValue.getValue().isPresent()) {
+            PathStack path = toPathStack(parentsAndIndices);
             String value = RosettaDataValueObjectToString.toValueString(fieldValue.getValue().get());
-            accumulator.add(new ReportField(
-                    computeFieldName(fieldValue, parentsAndIndices),
-                    ((Tabulator.FieldImpl)fieldValue.getField()).getRuleId().map(Object::toString).orElse(null),
-                    parentsAndIndices.isEmpty() ? null : parentsAndIndices.get(parentsAndIndices.size()-1).index,
+            FieldNameTemplates.Node node = path.node();
+            FieldNameTemplates.Template template = node == null ? null : node.template(fieldValue.getField());
+            sink.accept(new ReportField(
+                    template == null ? path.fieldName(fieldValue.getField().getName()) : template.fill(path.indices),
+                    template == null ?
+                            ((Tabulator.FieldImpl)fieldValue.getField()).getRuleId().map(Object::toString).orElse(null) :
+                            template.getRuleId(),
+                    path.lastIndex(),
                     value,
                     ""
             ));
         }
     }
-    private static String computeFieldName(Tabulator.FieldValue fieldValue, List<ParentAndIndex> parentsAndIndices) {
-        if (parentsAndIndices.isEmpty()) {
-            return fieldValue.getField().getName();
+    /**
+     * The path passed back to this visitor by nested field values, otherwise the reusable root path reset to the
+     * parents and indices passed by the caller.
+     */
+    private PathStack toPathStack(List<ParentAndIndex> parentsAndIndices) {
+        if (parentsAndIndices instanceof PathStack) {
+            return (PathStack) parentsAndIndices;
         }
-        StringBuilder result = new StringBuilder();
-        result
-                .append(parentsAndIndices.get(0).parent)
-                .append(" -> ");
-        for (int i=1; i<parentsAndIndices.size(); i++) {
-            result
-                    .append(insertIndex(parentsAndIndices.get(i).parent, parentsAndIndices.get(i-1).index))
-                    .append(" -> ");
-        }
-        result.append(insertIndex(fieldValue.getField().getName(), parentsAndIndices.get(parentsAndIndices.size()-1).index));
-        return result.toString();
+        // templates are keyed by field, so cannot be used below a path given only by name
+        rootPath.reset(parentsAndIndices, parentsAndIndices.isEmpty() ? templates.root() : null);
+        return rootPath;
     }
     private static String insertIndex(String fieldName, Integer index) {
         if (index == null) {
@@ -71,28 +152,61 @@ public class FieldValueFlattener implements Tabulator.FieldValueVisitor<List<Fie
     }
     @Override
     public void visitNested(Tabulator.NestedFieldValue nestedFieldValue, List<ParentAndIndex> parentsAndIndices) {
-        List<ParentAndIndex> newParentsAndIndices = new ArrayList<>(parentsAndIndices);
-        newParentsAndIndices.add(new ParentAndIndex(nestedFieldValue.getField().getName(), null));
-        nestedFieldValue.getValue().ifPresent(
-                (v) -> v.forEach(
-                        sub -> sub.accept(this, newParentsAndIndices)
-                )
-        );
+        if (nestedFieldValue.getValue().isEmpty()) {
+            return;
+        }
+        PathStack path = toPathStack(parentsAndIndices);
+        path.push(nestedFieldValue.getField().getName(), null, path.child(nestedFieldValue.getField(), false));
+        for (Tabulator.FieldValue sub : nestedFieldValue.getValue().get()) {
+            sub.accept(this, path);
+        }
+        path.pop();
     }
     @Override
     public void visitMultiNested(Tabulator.MultiNestedFieldValue multiNestedFieldValue, List<ParentAndIndex> parentsAndIndices) {
-        multiNestedFieldValue.getValue().ifPresent(
-                (vs) -> {
-                    for (int i=0; i<vs.size(); i++) {
-                        int repeatableIndex = i + 1;
-                        List<ParentAndIndex> newParentsAndIndices = new ArrayList<>(parentsAndIndices);
-                        newParentsAndIndices.add(new ParentAndIndex(multiNestedFieldValue.getField().getName(), repeatableIndex));
-                        vs.get(i).forEach(
-                                sub -> sub.accept(this, newParentsAndIndices)
-                        );
-                    }
-                }
-        );
+        if (multiNestedFieldValue.getValue().isEmpty()) {
+            return;
+        }
+        PathStack path = toPathStack(parentsAndIndices);
+        String parent = multiNestedFieldValue.getField().getName();
+        FieldNameTemplates.Node node = path.child(multiNestedFieldValue.getField(), true);
+        List<? extends List<? extends Tabulator.FieldValue>> vs = multiNestedFieldValue.getValue().get();
+        if (pool != null && vs.size() >= minimumParallelGroupSize) {
+            visitInParallel(vs, path, parent, node);
+            return;
+        }
+        visitRange(vs, 0, vs.size(), path, parent, node);
+    }
+    private void visitRange(List<? extends List<? extends Tabulator.FieldValue>> vs, int from, int to, PathStack path, String parent, FieldNameTemplates.Node node) {
+        for (int i=from; i<to; i++) {
+            int repeatableIndex = i + 1;
+            path.push(parent, repeatableIndex, node);
+            for (Tabulator.FieldValue sub : vs.get(i)) {
+                sub.accept(this, path);
+            }
+            path.pop();
+        }
+    }
+    private void visitInParallel(List<? extends List<? extends Tabulator.FieldValue>> vs, PathStack path, String parent, FieldNameTemplates.Node node) {
+        // a few chunks per worker, so uneven elements still balance
+        int chunks = Math.min(vs.size(), pool.getParallelism() * 4);
+        List<ForkJoinTask<List<ReportField>>> tasks = new ArrayList<>(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int from = (int) ((long) vs.size() * chunk / chunks);
+            int to = (int) ((long) vs.size() * (chunk + 1) / chunks);
+            PathStack chunkPath = new PathStack();
+            chunkPath.copyFrom(path);
+            tasks.add(pool.submit(() -> {
+                List<ReportField> buffer = new ArrayList<>();
+                // sequential within the chunk, with its own path, sharing the thread safe templates
+                FieldValueFlattener chunkFlattener = new FieldValueFlattener(buffer::add, templates);
+                chunkFlattener.visitRange(vs, from, to, chunkPath, parent, node);
+                return buffer;
+            }));
+        }
+        for (ForkJoinTask<List<ReportField>> task : tasks) {
+            task.join().forEach(sink);
+        }
     }
 
     public static class ParentAndIndex {
@@ -104,4 +218,111 @@ public class FieldValueFlattener implements Tabulator.FieldValueVisitor<List<Fie
             this.index = index;
         }
     }
+
+    /**
+     * Array backed path of parents and indices, that is pushed and popped as the visitor descends rather than copied.
+     * The field name prefix of each level, e.g. "A -> B (1) -> ", is cached until a level below it changes, so sibling
+     * fields share the prefix.
+     */
+    static final class PathStack extends AbstractList<ParentAndIndex> {
+        private String[] parents = new String[8];
+        private Integer[] indices = new Integer[8];
+        private String[] prefixes = new String[8];
+        private FieldNameTemplates.Node[] nodes = new FieldNameTemplates.Node[8];
+        private FieldNameTemplates.Node rootNode;
+        private int size;
+        // number of levels whose cached prefix is valid
+        private int validPrefixes;
+
+        void copyFrom(PathStack other) {
+            parents = Arrays.copyOf(other.parents, other.parents.length);
+            indices = Arrays.copyOf(other.indices, other.indices.length);
+            prefixes = new String[other.parents.length];
+            nodes = Arrays.copyOf(other.nodes, other.nodes.length);
+            rootNode = other.rootNode;
+            size = other.size;
+            validPrefixes = 0;
+        }
+
+        void reset(List<ParentAndIndex> parentsAndIndices, FieldNameTemplates.Node rootNode) {
+            size = 0;
+            this.rootNode = rootNode;
+            for (ParentAndIndex parentAndIndex : parentsAndIndices) {
+                push(parentAndIndex.parent, parentAndIndex.index, null);
+            }
+        }
+
+        /**
+         * Template node of the current path, or null if the path has no templates.
+         */
+        FieldNameTemplates.Node node() {
+            return size == 0 ? rootNode : nodes[size - 1];
+        }
+
+        FieldNameTemplates.Node child(Tabulator.Field field, boolean indexed) {
+            FieldNameTemplates.Node node = node();
+            return node == null ? null : node.child(field, indexed);
+        }
+
+        void push(String parent, Integer index, FieldNameTemplates.Node node) {
+            if (size == parents.length) {
+                parents = Arrays.copyOf(parents, size * 2);
+                indices = Arrays.copyOf(indices, size * 2);
+                prefixes = Arrays.copyOf(prefixes, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            // the prefix of this level depends on its parent and the index of the level above, not its own index
+            if (validPrefixes > size && !parent.equals(parents[size])) {
+                validPrefixes = size;
+            }
+            // the prefix of the level below depends on this level's index
+            if (validPrefixes > size + 1 && !Objects.equals(index, indices[size])) {
+                validPrefixes = size + 1;
+            }
+            parents[size] = parent;
+            indices[size] = index;
+            nodes[size] = node;
+            size++;
+        }
+
+        void pop() {
+            size--;
+        }
+
+        Integer lastIndex() {
+            return size == 0 ? null : indices[size - 1];
+        }
+
+        String fieldName(String name) {
+            if (size == 0) {
+                return name;
+            }
+            return prefix(size - 1) + insertIndex(name, indices[size - 1]);
+        }
+
+        private String prefix(int level) {
+            if (level >= validPrefixes) {
+                for (int i = validPrefixes; i <= level; i++) {
+                    prefixes[i] = i == 0 ?
+                            parents[0] + " -> " :
+                            prefixes[i - 1] + insertIndex(parents[i], indices[i - 1]) + " -> ";
+                }
+                validPrefixes = level + 1;
+            }
+            return prefixes[level];
+        }
+
+        @Override
+        public ParentAndIndex get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+            }
+            return new ParentAndIndex(parents[index], indices[index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
 }
@@ -0,0 +1,97 @@
+package com.regnosys.testing;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JVM-wide registry of Guice injectors, so test classes that use the same runtime module can share one injector
+ * rather than each paying the injector startup cost.
+ * <p>
+ * Sharing is opt-in, as a shared injector also shares its singletons between test classes. Injector creation counts
+ * and times are recorded whether or not the injector is shared.
+ */
+public class InjectorRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InjectorRegistry.class);
+
+    /**
+     * Set environment variable SHARE_INJECTORS=true to share injectors in every test class that supports it.
+     */
+    public static final boolean SHARE_INJECTORS = Optional.ofNullable(System.getenv("SHARE_INJECTORS"))
+            .map(Boolean::parseBoolean).orElse(false);
+
+    private static final Map<Object, Injector> INJECTORS = new ConcurrentHashMap<>();
+    private static final AtomicInteger CREATION_COUNT = new AtomicInteger();
+    private static final AtomicLong CREATION_NANOS = new AtomicLong();
+
+    private InjectorRegistry() {
+    }
+
+    /**
+     * Gets the shared injector for the module type, creating it on first use.
+     */
+    public static Injector getOrCreate(Module module) {
+        return getOrCreate(module.getClass(), module);
+    }
+
+    /**
+     * Gets the shared injector for the key, creating it from the module on first use.
+     */
+    public static Injector getOrCreate(Object key, Module module) {
+        return INJECTORS.computeIfAbsent(key, k -> create(module));
+    }
+
+    /**
+     * Creates a new, unshared injector.
+     */
+    public static Injector create(Module module) {
+        long start = System.nanoTime();
+        Injector injector = Guice.createInjector(module);
+        long nanos = System.nanoTime() - start;
+        int count = CREATION_COUNT.incrementAndGet();
+        long totalNanos = CREATION_NANOS.addAndGet(nanos);
+        LOGGER.info("Created injector for {} in {}ms ({} injectors created in {}ms in total)",
+                module.getClass().getName(),
+                TimeUnit.NANOSECONDS.toMillis(nanos),
+                count,
+                TimeUnit.NANOSECONDS.toMillis(totalNanos));
+        return injector;
+    }
+
+    public static int getCreationCount() {
+        return CREATION_COUNT.get();
+    }
+
+    public static long getCreationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(CREATION_NANOS.get());
+    }
+}
@@ -0,0 +1,274 @@
+package com.regnosys.testing.reports;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.google.common.collect.ImmutableList;
+import com.regnosys.rosetta.common.reports.ReportField;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Differences between expected and actual flattened report fields, see {@link com.regnosys.testing.FieldValueFlattener}.
+ * <p>
+ * Fields are hash joined by field name, rule id and repeatable index, so the diff is linear in the number of fields.
+ * Elements of a repeatable group that moved to another index, with the same direct fields and values, are reported as
+ * reordered rather than as changes to every field of both elements.
+ */
+public class ReportFieldDiff {
+
+    private static final String PATH_SEPARATOR = " -> ";
+    private static final int MAX_VALUE_LENGTH = 80;
+
+    public static class Change {
+        private final ReportField expected;
+        private final ReportField actual;
+
+        Change(ReportField expected, ReportField actual) {
+            this.expected = expected;
+            this.actual = actual;
+        }
+
+        public ReportField getExpected() {
+            return expected;
+        }
+
+        public ReportField getActual() {
+            return actual;
+        }
+    }
+
+    public static class Reorder {
+        private final String groupPath;
+        private final int expectedIndex;
+        private final int actualIndex;
+
+        Reorder(String groupPath, int expectedIndex, int actualIndex) {
+            this.groupPath = groupPath;
+            this.expectedIndex = expectedIndex;
+            this.actualIndex = actualIndex;
+        }
+
+        /**
+         * Field name path of the repeatable group, without the repeatable field itself.
+         */
+        public String getGroupPath() {
+            return groupPath;
+        }
+
+        public int getExpectedIndex() {
+            return expectedIndex;
+        }
+
+        public int getActualIndex() {
+            return actualIndex;
+        }
+    }
+
+    private final ImmutableList<ReportField> added;
+    private final ImmutableList<ReportField> removed;
+    private final ImmutableList<Change> changed;
+    private final ImmutableList<Reorder> reordered;
+
+    private ReportFieldDiff(List<ReportField> added, List<ReportField> removed, List<Change> changed, List<Reorder> reordered) {
+        this.added = ImmutableList.copyOf(added);
+        this.removed = ImmutableList.copyOf(removed);
+        this.changed = ImmutableList.copyOf(changed);
+        this.reordered = ImmutableList.copyOf(reordered);
+    }
+
+    public static ReportFieldDiff diff(List<ReportField> expected, List<ReportField> actual) {
+        Map<List<Object>, Deque<ReportField>> expectedByKey = new LinkedHashMap<>();
+        for (ReportField field : expected) {
+            expectedByKey.computeIfAbsent(key(field), k -> new ArrayDeque<>()).add(field);
+        }
+        List<ReportField> added = new ArrayList<>();
+        List<Change> changed = new ArrayList<>();
+        for (ReportField actualField : actual) {
+            Deque<ReportField> expectedFields = expectedByKey.get(key(actualField));
+            ReportField expectedField = expectedFields == null ? null : expectedFields.poll();
+            if (expectedField == null) {
+                added.add(actualField);
+            } else if (!Objects.equals(expectedField.getValue(), actualField.getValue())) {
+                changed.add(new Change(expectedField, actualField));
+            }
+        }
+        List<ReportField> removed = expectedByKey.values().stream()
+                .flatMap(Deque::stream)
+                .collect(Collectors.toList());
+
+        Set<String> groupPaths = Stream.of(added.stream(), removed.stream(), changed.stream().map(Change::getExpected))
+                .flatMap(s -> s)
+                .filter(f -> f.getRepeatableIndex() != null)
+                .map(ReportFieldDiff::groupPath)
+                .collect(Collectors.toSet());
+        if (groupPaths.isEmpty()) {
+            return new ReportFieldDiff(added, removed, changed, List.of());
+        }
+
+        // match the elements of each affected repeatable group by content, rather than by index
+        Map<List<Object>, Map<String, String>> expectedElements = elements(expected, groupPaths);
+        Map<List<Object>, Map<String, String>> actualElements = elements(actual, groupPaths);
+        Map<List<Object>, Deque<Integer>> actualIndicesByContent = new HashMap<>();
+        actualElements.forEach((element, content) ->
+                actualIndicesByContent.computeIfAbsent(Arrays.asList(element.get(0), content), k -> new ArrayDeque<>()).add((Integer) element.get(1)));
+
+        List<Reorder> reordered = new ArrayList<>();
+        Set<List<Object>> movedExpectedElements = new HashSet<>();
+        Set<List<Object>> movedActualElements = new HashSet<>();
+        expectedElements.forEach((element, content) -> {
+            if (content.equals(actualElements.get(element))) {
+                actualIndicesByContent.get(Arrays.asList(element.get(0), content)).remove(element.get(1));
+            }
+        });
+        expectedElements.forEach((element, content) -> {
+            if (content.equals(actualElements.get(element))) {
+                return;
+            }
+            Deque<Integer> actualIndices = actualIndicesByContent.get(Arrays.asList(element.get(0), content));
+            Integer actualIndex = actualIndices == null ? null : actualIndices.poll();
+            if (actualIndex != null) {
+                reordered.add(new Reorder((String) element.get(0), (Integer) element.get(1), actualIndex));
+                movedExpectedElements.add(element);
+                movedActualElements.add(Arrays.asList(element.get(0), actualIndex));
+            }
+        });
+        if (reordered.isEmpty()) {
+            return new ReportFieldDiff(added, removed, changed, List.of());
+        }
+
+        return new ReportFieldDiff(
+                added.stream().filter(f -> !movedActualElements.contains(element(f))).collect(Collectors.toList()),
+                removed.stream().filter(f -> !movedExpectedElements.contains(element(f))).collect(Collectors.toList()),
+                changed.stream()
+                        .filter(c -> !movedExpectedElements.contains(element(c.getExpected())) || !movedActualElements.contains(element(c.getActual())))
+                        .collect(Collectors.toList()),
+                reordered);
+    }
+
+    private static List<Object> key(ReportField field) {
+        return Arrays.asList(field.getName(), field.getRuleId(), field.getRepeatableIndex());
+    }
+
+    /**
+     * Group path and repeatable index of the element of a repeatable group that the field belongs to.
+     */
+    private static List<Object> element(ReportField field) {
+        return field.getRepeatableIndex() == null ? null : Arrays.asList(groupPath(field), field.getRepeatableIndex());
+    }
+
+    private static String groupPath(ReportField field) {
+        String name = field.getName();
+        int separator = name.lastIndexOf(PATH_SEPARATOR);
+        return separator < 0 ? "" : name.substring(0, separator);
+    }
+
+    /**
+     * Direct fields of each element of the repeatable groups, by rule id if there is one, otherwise by field name
+     * without the repeatable index.
+     */
+    private static Map<List<Object>, Map<String, String>> elements(List<ReportField> fields, Set<String> groupPaths) {
+        Map<List<Object>, Map<String, String>> elements = new LinkedHashMap<>();
+        for (ReportField field : fields) {
+            if (field.getRepeatableIndex() == null) {
+                continue;
+            }
+            String groupPath = groupPath(field);
+            if (groupPaths.contains(groupPath)) {
+                String fieldId = field.getRuleId() != null ? field.getRuleId() : unindexedName(field).substring(groupPath.length());
+                elements.computeIfAbsent(Arrays.asList(groupPath, field.getRepeatableIndex()), k -> new TreeMap<>())
+                        .put(fieldId, field.getValue());
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Field name with the repeatable index removed, whether appended as " (n)" or substituted for a "$" in the name.
+     */
+    private static String unindexedName(ReportField field) {
+        String name = field.getName();
+        String index = field.getRepeatableIndex().toString();
+        String suffix = " (" + index + ")";
+        if (name.endsWith(suffix)) {
+            return name.substring(0, name.length() - suffix.length());
+        }
+        int lastIndex = name.lastIndexOf(index);
+        return lastIndex < 0 ? name : name.substring(0, lastIndex) + "$" + name.substring(lastIndex + index.length());
+    }
+
+    public List<ReportField> getAdded() {
+        return added;
+    }
+
+    public List<ReportField> getRemoved() {
+        return removed;
+    }
+
+    public List<Change> getChanged() {
+        return changed;
+    }
+
+    public List<Reorder> getReordered() {
+        return reordered;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty() && reordered.isEmpty();
+    }
+
+    /**
+     * Up to maxDifferences lines describing the differences, followed by the number of differences not shown.
+     */
+    public String describe(int maxDifferences) {
+        List<String> lines = new ArrayList<>();
+        changed.forEach(c -> lines.add(String.format("changed %s: expected <%s> but was <%s>",
+                c.getExpected().getName(), truncate(c.getExpected().getValue()), truncate(c.getActual().getValue()))));
+        removed.forEach(f -> lines.add(String.format("removed %s: <%s>", f.getName(), truncate(f.getValue()))));
+        added.forEach(f -> lines.add(String.format("added %s: <%s>", f.getName(), truncate(f.getValue()))));
+        reordered.forEach(r -> lines.add(String.format("reordered %s: element %d is now %d", r.getGroupPath(), r.getExpectedIndex(), r.getActualIndex())));
+        String description = lines.stream().limit(maxDifferences).collect(Collectors.joining("\n"));
+        return lines.size() > maxDifferences ?
+                description + "\n... and " + (lines.size() - maxDifferences) + " more differences" :
+                description;
+    }
+
+    @Override
+    public String toString() {
+        return describe(20);
+    }
+
+    private static String truncate(String value) {
+        return value == null || value.length() <= MAX_VALUE_LENGTH ? value : value.substring(0, MAX_VALUE_LENGTH) + "...";
+    }
+}
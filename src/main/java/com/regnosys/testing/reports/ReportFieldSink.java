@@ -0,0 +1,161 @@
+package com.regnosys.testing.reports;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.regnosys.rosetta.common.reports.ReportField;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Writes each report field to a file as it is flattened, e.g. {@code new FieldValueFlattener(tabulator, sink)}, so the report
+ * fields are never all held in memory. Write failures are thrown as {@link UncheckedIOException}.
+ */
+public abstract class ReportFieldSink implements Consumer<ReportField>, Closeable {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * CSV file with a header row and columns name, ruleId, repeatableIndex, value and issue.
+     */
+    public static ReportFieldSink csv(Path path) throws IOException {
+        return new CsvSink(newWriter(path));
+    }
+
+    /**
+     * JSON lines file with one object per report field.
+     */
+    public static ReportFieldSink jsonLines(Path path) throws IOException {
+        return new JsonLinesSink(newWriter(path));
+    }
+
+    private static Writer newWriter(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        return Files.newBufferedWriter(path);
+    }
+
+    private long count;
+
+    @Override
+    public void accept(ReportField reportField) {
+        try {
+            write(reportField);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        count++;
+    }
+
+    protected abstract void write(ReportField reportField) throws IOException;
+
+    /**
+     * Number of report fields written.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    private static class CsvSink extends ReportFieldSink {
+        private final Writer writer;
+
+        private CsvSink(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write("name,ruleId,repeatableIndex,value,issue\n");
+        }
+
+        @Override
+        protected void write(ReportField reportField) throws IOException {
+            writeValue(reportField.getName());
+            writer.write(',');
+            writeValue(reportField.getRuleId());
+            writer.write(',');
+            if (reportField.getRepeatableIndex() != null) {
+                writer.write(reportField.getRepeatableIndex().toString());
+            }
+            writer.write(',');
+            writeValue(reportField.getValue());
+            writer.write(',');
+            writeValue(reportField.getIssue());
+            writer.write('\n');
+        }
+
+        private void writeValue(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static class JsonLinesSink extends ReportFieldSink {
+        private final JsonGenerator generator;
+
+        private JsonLinesSink(Writer writer) throws IOException {
+            this.generator = JSON_FACTORY.createGenerator(writer);
+            // one object per line, rather than the default single space between root values
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        protected void write(ReportField reportField) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("name", reportField.getName());
+            if (reportField.getRuleId() != null) {
+                generator.writeStringField("ruleId", reportField.getRuleId());
+            }
+            if (reportField.getRepeatableIndex() != null) {
+                generator.writeNumberField("repeatableIndex", reportField.getRepeatableIndex());
+            }
+            generator.writeStringField("value", reportField.getValue());
+            if (reportField.getIssue() != null && !reportField.getIssue().isEmpty()) {
+                generator.writeStringField("issue", reportField.getIssue());
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+}
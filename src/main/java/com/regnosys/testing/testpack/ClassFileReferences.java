@@ -0,0 +1,115 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the names of the classes referenced by a class file from its constant pool, i.e. the classes it calls,
+ * constructs, extends or declares in a field, method or annotation.
+ */
+class ClassFileReferences {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    // class names in descriptors and signatures, e.g. "(Lcom/rosetta/Foo;)Ljava/util/List<Lcom/rosetta/Bar;>;"
+    private static final Pattern DESCRIPTOR_CLASS_NAME = Pattern.compile("L([\\w/$]+)[;<]");
+
+    /**
+     * @return internal class names, e.g. "com/rosetta/Foo", or empty if the bytes are not a class file
+     */
+    static Set<String> read(byte[] classFile) {
+        Set<String> classNames = new TreeSet<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile))) {
+            if (in.readInt() != MAGIC) {
+                return classNames;
+            }
+            in.readUnsignedShort();
+            in.readUnsignedShort();
+            int constantPoolCount = in.readUnsignedShort();
+            String[] utf8 = new String[constantPoolCount];
+            List<Integer> classNameIndices = new ArrayList<>();
+            for (int i = 1; i < constantPoolCount; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case 1: // Utf8
+                        utf8[i] = in.readUTF();
+                        break;
+                    case 7: // Class
+                        classNameIndices.add(in.readUnsignedShort());
+                        break;
+                    case 8: // String
+                    case 16: // MethodType
+                    case 19: // Module
+                    case 20: // Package
+                        in.readUnsignedShort();
+                        break;
+                    case 15: // MethodHandle
+                        in.readUnsignedByte();
+                        in.readUnsignedShort();
+                        break;
+                    case 3: // Integer
+                    case 4: // Float
+                    case 9: // Fieldref
+                    case 10: // Methodref
+                    case 11: // InterfaceMethodref
+                    case 12: // NameAndType
+                    case 17: // Dynamic
+                    case 18: // InvokeDynamic
+                        in.readInt();
+                        break;
+                    case 5: // Long
+                    case 6: // Double
+                        in.readLong();
+                        // takes two constant pool entries
+                        i++;
+                        break;
+                    default:
+                        throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+            for (int index : classNameIndices) {
+                String name = utf8[index];
+                if (name != null && !name.startsWith("[")) {
+                    classNames.add(name);
+                }
+            }
+            for (String value : utf8) {
+                if (value != null) {
+                    Matcher matcher = DESCRIPTOR_CLASS_NAME.matcher(value);
+                    while (matcher.find()) {
+                        classNames.add(matcher.group(1));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // not a readable class file, so nothing more can be found from it
+        }
+        return classNames;
+    }
+}
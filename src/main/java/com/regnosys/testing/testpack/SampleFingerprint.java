@@ -0,0 +1,231 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Multimap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Everything a generated sample depends on. If the fingerprint of a sample is unchanged since the last run, the
+ * sample does not need to be run again.
+ */
+public class SampleFingerprint {
+    private static final Map<List<Object>, ClassFile> CLASS_FILES = new ConcurrentHashMap<>();
+    private static final List<String> PLATFORM_PACKAGES = List.of("java/", "javax/", "jdk/", "sun/", "com/sun/");
+
+    private final String inputHash;
+    private final String functionClass;
+    private final String functionHash;
+    private final String outputSerialisation;
+    private final String xsdSchema;
+
+    @JsonCreator
+    public SampleFingerprint(@JsonProperty("inputHash") String inputHash,
+                             @JsonProperty("functionClass") String functionClass,
+                             @JsonProperty("functionHash") String functionHash,
+                             @JsonProperty("outputSerialisation") String outputSerialisation,
+                             @JsonProperty("xsdSchema") String xsdSchema) {
+        this.inputHash = inputHash;
+        this.functionClass = functionClass;
+        this.functionHash = functionHash;
+        this.outputSerialisation = outputSerialisation;
+        this.xsdSchema = xsdSchema;
+    }
+
+    public SampleFingerprint withInputHash(String inputHash) {
+        return new SampleFingerprint(inputHash, functionClass, functionHash, outputSerialisation, xsdSchema);
+    }
+
+    public String getInputHash() {
+        return inputHash;
+    }
+
+    public String getFunctionClass() {
+        return functionClass;
+    }
+
+    public String getFunctionHash() {
+        return functionHash;
+    }
+
+    public String getOutputSerialisation() {
+        return outputSerialisation;
+    }
+
+    public String getXsdSchema() {
+        return xsdSchema;
+    }
+
+    /**
+     * Hash of the file content, or null if the file does not exist.
+     */
+    public static String hashFile(Path path) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            return Hashing.sha256().hashBytes(Files.readAllBytes(path)).toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Hash of the bytecode of the function and of every class it can reach, by the class references in their class
+     * files or by an implementation the injector binds to a reachable type, e.g. the generated functions it calls and
+     * the model classes it builds. A change to a class the function cannot reach, such as an unrelated part of the
+     * model, does not change the hash. JDK classes are not followed.
+     *
+     * @param boundImplementations - internal names of the types bound by the injector, e.g. "com/rosetta/Foo", and of
+     *                             the classes bound to them
+     * @return the hash, or null if the function class file cannot be found, in which case no sample is reused
+     */
+    public static String hashFunction(Class<?> function, Multimap<String, String> boundImplementations) {
+        ClassLoader classLoader = function.getClassLoader() != null ? function.getClassLoader() : ClassLoader.getSystemClassLoader();
+        return hashReachableClasses(toInternalName(function), classLoader, boundImplementations);
+    }
+
+    static String toInternalName(Class<?> clazz) {
+        return clazz.getName().replace('.', '/');
+    }
+
+    static String hashReachableClasses(String internalName, ClassLoader classLoader, Multimap<String, String> boundImplementations) {
+        Map<String, String> classHashes = new TreeMap<>();
+        Set<String> visited = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        visited.add(internalName);
+        pending.add(internalName);
+        while (!pending.isEmpty()) {
+            String className = pending.pop();
+            ClassFile classFile = readClassFile(className, classLoader);
+            if (classFile == null) {
+                if (className.equals(internalName)) {
+                    // e.g. a runtime generated class, so there is nothing reliable to hash
+                    return null;
+                }
+                // e.g. an optional dependency that is not on the class path
+                continue;
+            }
+            classHashes.put(className, classFile.hash);
+            for (String reference : Iterables.concat(classFile.references, boundImplementations.get(className))) {
+                if (!isPlatformClass(reference) && visited.add(reference)) {
+                    pending.add(reference);
+                }
+            }
+        }
+        Hasher hasher = Hashing.sha256().newHasher();
+        classHashes.forEach((className, hash) -> hasher.putString(className, StandardCharsets.UTF_8).putString(hash, StandardCharsets.UTF_8));
+        return hasher.hash().toString();
+    }
+
+    private static boolean isPlatformClass(String internalName) {
+        return PLATFORM_PACKAGES.stream().anyMatch(internalName::startsWith);
+    }
+
+    /**
+     * Reads the class file, memoised for as long as the size and last modified time of its file or jar are unchanged,
+     * as the same classes are reached from the function of every pipeline.
+     */
+    private static ClassFile readClassFile(String internalName, ClassLoader classLoader) {
+        URL url = classLoader.getResource(internalName + ".class");
+        if (url == null) {
+            return null;
+        }
+        return CLASS_FILES.computeIfAbsent(getStamp(url), k -> {
+            try (InputStream inputStream = url.openStream()) {
+                byte[] bytes = ByteStreams.toByteArray(inputStream);
+                return new ClassFile(Hashing.sha256().hashBytes(bytes).toString(), ClassFileReferences.read(bytes));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static List<Object> getStamp(URL url) {
+        try {
+            Path path = null;
+            if ("file".equals(url.getProtocol())) {
+                path = Path.of(url.toURI());
+            } else if ("jar".equals(url.getProtocol())) {
+                String jarUrl = url.getPath().substring(0, url.getPath().indexOf("!/"));
+                path = Path.of(new URI(jarUrl));
+            }
+            if (path != null && Files.exists(path)) {
+                return List.of(url.toString(), Files.size(path), Files.getLastModifiedTime(path));
+            }
+        } catch (URISyntaxException | IllegalArgumentException | IndexOutOfBoundsException | FileSystemNotFoundException | IOException e) {
+            // stamped by the url alone, e.g. a JDK class, which cannot change while the JVM is running
+        }
+        return List.of(url.toString());
+    }
+
+    private static final class ClassFile {
+        private final String hash;
+        private final Set<String> references;
+
+        private ClassFile(String hash, Set<String> references) {
+            this.hash = hash;
+            this.references = references;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SampleFingerprint that = (SampleFingerprint) o;
+        return Objects.equals(inputHash, that.inputHash)
+                && Objects.equals(functionClass, that.functionClass)
+                && Objects.equals(functionHash, that.functionHash)
+                && Objects.equals(outputSerialisation, that.outputSerialisation)
+                && Objects.equals(xsdSchema, that.xsdSchema);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(inputHash, functionClass, functionHash, outputSerialisation, xsdSchema);
+    }
+}
@@ -0,0 +1,110 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Wall time and allocated bytes of each stage of running a single sample.
+ * <p>
+ * Allocated bytes are measured for the current thread, and are -1 if the JVM does not support it.
+ */
+public class SampleTimings {
+
+    public enum Stage {
+        READ,
+        PARSE,
+        RESOLVE,
+        EVALUATE,
+        SERIALISE,
+        TYPE_VALIDATION,
+        XSD_VALIDATION
+    }
+
+    @FunctionalInterface
+    interface StageAction<T> {
+        T run() throws Exception;
+    }
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final long[] nanos = new long[Stage.values().length];
+    private final long[] allocatedBytes = new long[Stage.values().length];
+    private final boolean[] timed = new boolean[Stage.values().length];
+
+    SampleTimings() {
+        Arrays.fill(allocatedBytes, -1);
+    }
+
+    /**
+     * Runs the action, adding its wall time and allocated bytes to the stage.
+     */
+    <T> T time(Stage stage, StageAction<T> action) throws Exception {
+        long startBytes = allocatedBytes();
+        long start = System.nanoTime();
+        try {
+            return action.run();
+        } finally {
+            long end = System.nanoTime();
+            long endBytes = allocatedBytes();
+            add(stage, end - start, startBytes >= 0 && endBytes >= 0 ? endBytes - startBytes : -1);
+        }
+    }
+
+    /**
+     * Adds the wall time and allocated bytes, or -1 if not measured, of a run of the stage.
+     */
+    void add(Stage stage, long stageNanos, long stageAllocatedBytes) {
+        timed[stage.ordinal()] = true;
+        nanos[stage.ordinal()] += stageNanos;
+        if (stageAllocatedBytes >= 0) {
+            allocatedBytes[stage.ordinal()] = Math.max(allocatedBytes[stage.ordinal()], 0) + stageAllocatedBytes;
+        }
+    }
+
+    /**
+     * Whether the stage was run for the sample, rather than skipped, e.g. the input was read, parsed and resolved by
+     * another report of the test pack and taken from the input cache.
+     */
+    public boolean isTimed(Stage stage) {
+        return timed[stage.ordinal()];
+    }
+
+    public long getNanos(Stage stage) {
+        return nanos[stage.ordinal()];
+    }
+
+    public long getAllocatedBytes(Stage stage) {
+        return allocatedBytes[stage.ordinal()];
+    }
+
+    private static long allocatedBytes() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            if (threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled()) {
+                return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,85 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.google.common.hash.Hashing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Function output serialised once into a byte buffer, which is then read in place for schema validation and writing
+ * the output file, rather than copied into a String and back into byte arrays.
+ */
+class SerialisedOutput extends ByteArrayOutputStream {
+
+    SerialisedOutput(int initialSize) {
+        super(initialSize);
+    }
+
+    InputStream toInputStream() {
+        return new ByteArrayInputStream(buf, 0, count);
+    }
+
+    /**
+     * Hash of the output file content written by {@link #writeTo(Path)}, see {@link SampleFingerprint#hashFile}.
+     */
+    String hash() {
+        if (!isUtf8Default()) {
+            return Hashing.sha256().hashBytes(toDefaultCharsetBytes()).toString();
+        }
+        return Hashing.sha256().hashBytes(buf, 0, count).toString();
+    }
+
+    /**
+     * Writes the output file in the platform default charset, as it was written before it was serialised to bytes, so
+     * the file is only transcoded if the default charset is not UTF-8.
+     */
+    void writeTo(Path path) throws IOException {
+        if (!isUtf8Default()) {
+            Files.write(path, toDefaultCharsetBytes());
+            return;
+        }
+        try (OutputStream outputStream = Files.newOutputStream(path)) {
+            writeTo(outputStream);
+        }
+    }
+
+    private static boolean isUtf8Default() {
+        return Charset.defaultCharset().equals(StandardCharsets.UTF_8);
+    }
+
+    private byte[] toDefaultCharsetBytes() {
+        return toString(StandardCharsets.UTF_8).getBytes(Charset.defaultCharset());
+    }
+
+    @Override
+    public String toString() {
+        return toString(StandardCharsets.UTF_8);
+    }
+}
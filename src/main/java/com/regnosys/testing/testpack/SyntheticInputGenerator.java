@@ -0,0 +1,233 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.regnosys.testing.testpack.TestPackFunctionRunnerProviderImpl.JSON_OBJECT_MAPPER;
+
+/**
+ * Generates large synthetic inputs from a seed sample, by replicating the elements of repeated fields and perturbing
+ * the decimal values of each copy.
+ * <p>
+ * Repeated fields are selected by their dot separated path of field names from the root, e.g. "trade.tradeLot". If
+ * none are selected, every outermost repeated field is replicated. Meta data is not perturbed, but the keys defined
+ * within each copy, and the references within the copy to them, are given a "-copy&lt;n&gt;" suffix so every key is
+ * unique and references still resolve. Whole numbers are left unchanged as they are more often counts or periods than
+ * amounts. Generation is deterministic for a given random seed.
+ */
+public class SyntheticInputGenerator {
+
+    private static final String META = "meta";
+    private static final String GLOBAL_KEY = "globalKey";
+    private static final String EXTERNAL_KEY = "externalKey";
+    private static final String LOCATION = "location";
+    private static final String GLOBAL_REFERENCE = "globalReference";
+    private static final String EXTERNAL_REFERENCE = "externalReference";
+    private static final String ADDRESS = "address";
+    private static final String VALUE = "value";
+    private static final Set<String> META_FIELDS = ImmutableSet.of(META, GLOBAL_KEY, EXTERNAL_KEY, GLOBAL_REFERENCE, EXTERNAL_REFERENCE, ADDRESS, LOCATION, "scheme");
+    private static final double MAX_PERTURBATION = 0.01;
+
+    public static SyntheticInputGenerator create(JsonNode seedInput) {
+        return new SyntheticInputGenerator(seedInput, ImmutableSet.of(), 0L);
+    }
+
+    public static SyntheticInputGenerator create(Path seedInputPath) throws IOException {
+        return create(JSON_OBJECT_MAPPER.readTree(Files.readAllBytes(seedInputPath)));
+    }
+
+    /**
+     * Replicates only the repeated fields at these paths, e.g. "trade.tradeLot" or "lineage.eventReference".
+     */
+    public SyntheticInputGenerator withRepeatedFields(String... paths) {
+        return new SyntheticInputGenerator(seedInput, ImmutableSet.copyOf(paths), randomSeed);
+    }
+
+    public SyntheticInputGenerator withRandomSeed(long randomSeed) {
+        return new SyntheticInputGenerator(seedInput, repeatedFields, randomSeed);
+    }
+
+    private final JsonNode seedInput;
+    private final ImmutableSet<String> repeatedFields;
+    private final long randomSeed;
+
+    private SyntheticInputGenerator(JsonNode seedInput, ImmutableSet<String> repeatedFields, long randomSeed) {
+        this.seedInput = seedInput;
+        this.repeatedFields = repeatedFields;
+        this.randomSeed = randomSeed;
+    }
+
+    /**
+     * Copy of the seed input with each replicated field holding factor times its original number of elements.
+     */
+    public JsonNode generate(int factor) {
+        if (factor < 1) {
+            throw new IllegalArgumentException("Factor must be at least 1, but was " + factor);
+        }
+        JsonNode input = seedInput.deepCopy();
+        replicate(input, "", factor, false, new SplittableRandom(randomSeed), new AtomicInteger());
+        return input;
+    }
+
+    private void replicate(JsonNode node, String path, int factor, boolean inReplicatedField, SplittableRandom random, AtomicInteger copies) {
+        if (node.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (!META_FIELDS.contains(field.getKey())) {
+                    String fieldPath = path.isEmpty() ? field.getKey() : path + "." + field.getKey();
+                    replicate(field.getValue(), fieldPath, factor, inReplicatedField, random, copies);
+                }
+            }
+        } else if (node.isArray()) {
+            ArrayNode arrayNode = (ArrayNode) node;
+            boolean replicated = isReplicated(path, inReplicatedField);
+            for (JsonNode element : arrayNode) {
+                replicate(element, path, factor, inReplicatedField || replicated, random, copies);
+            }
+            if (replicated && factor > 1) {
+                List<JsonNode> elements = new ArrayList<>();
+                arrayNode.forEach(elements::add);
+                for (int i = 1; i < factor; i++) {
+                    for (JsonNode element : elements) {
+                        JsonNode copy = perturb(element.deepCopy(), random);
+                        renameKeys(copy, "-copy" + copies.incrementAndGet());
+                        arrayNode.add(copy);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isReplicated(String path, boolean inReplicatedField) {
+        return repeatedFields.isEmpty() ? !inReplicatedField : repeatedFields.contains(path);
+    }
+
+    /**
+     * Suffixes the keys defined within the copy, and the references within the copy to them. References to keys outside
+     * the copy are left unchanged, so they still resolve to the shared element.
+     */
+    private static void renameKeys(JsonNode copy, String suffix) {
+        SetMultimap<String, String> keys = HashMultimap.create();
+        collectKeys(copy, keys);
+        if (!keys.isEmpty()) {
+            renameKeys(copy, keys, suffix);
+        }
+    }
+
+    private static void collectKeys(JsonNode node, SetMultimap<String, String> keys) {
+        JsonNode meta = node.path(META);
+        if (meta.isObject()) {
+            addKey(meta.get(GLOBAL_KEY), GLOBAL_KEY, keys);
+            addKey(meta.get(EXTERNAL_KEY), EXTERNAL_KEY, keys);
+            for (JsonNode location : meta.path(LOCATION)) {
+                addKey(location.get(VALUE), LOCATION, keys);
+            }
+        }
+        for (JsonNode child : node) {
+            collectKeys(child, keys);
+        }
+    }
+
+    private static void addKey(JsonNode key, String keyType, SetMultimap<String, String> keys) {
+        if (key != null && key.isTextual()) {
+            keys.put(keyType, key.textValue());
+        }
+    }
+
+    private static void renameKeys(JsonNode node, SetMultimap<String, String> keys, String suffix) {
+        if (node.isObject()) {
+            JsonNode meta = node.get(META);
+            if (meta != null && meta.isObject()) {
+                renameKey(meta, GLOBAL_KEY, keys.get(GLOBAL_KEY), suffix);
+                renameKey(meta, EXTERNAL_KEY, keys.get(EXTERNAL_KEY), suffix);
+                for (JsonNode location : meta.path(LOCATION)) {
+                    renameKey(location, VALUE, keys.get(LOCATION), suffix);
+                }
+            }
+            renameKey(node, GLOBAL_REFERENCE, keys.get(GLOBAL_KEY), suffix);
+            renameKey(node, EXTERNAL_REFERENCE, keys.get(EXTERNAL_KEY), suffix);
+            JsonNode address = node.get(ADDRESS);
+            if (address != null) {
+                renameKey(address, VALUE, keys.get(LOCATION), suffix);
+            }
+        }
+        for (JsonNode child : node) {
+            renameKeys(child, keys, suffix);
+        }
+    }
+
+    private static void renameKey(JsonNode node, String fieldName, Set<String> keys, String suffix) {
+        JsonNode key = node.get(fieldName);
+        if (node.isObject() && key != null && key.isTextual() && keys.contains(key.textValue())) {
+            ((ObjectNode) node).put(fieldName, key.textValue() + suffix);
+        }
+    }
+
+    private JsonNode perturb(JsonNode node, SplittableRandom random) {
+        if (node.isObject()) {
+            ObjectNode objectNode = (ObjectNode) node;
+            Iterator<Map.Entry<String, JsonNode>> fields = objectNode.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (!META_FIELDS.contains(field.getKey())) {
+                    field.setValue(perturb(field.getValue(), random));
+                }
+            }
+        } else if (node.isArray()) {
+            ArrayNode arrayNode = (ArrayNode) node;
+            for (int i = 0; i < arrayNode.size(); i++) {
+                arrayNode.set(i, perturb(arrayNode.get(i), random));
+            }
+        } else if (node.isBigDecimal()) {
+            BigDecimal value = node.decimalValue();
+            if (value.scale() > 0) {
+                BigDecimal perturbed = value.multiply(BigDecimal.valueOf(1 + random.nextDouble(-MAX_PERTURBATION, MAX_PERTURBATION)))
+                        .setScale(value.scale(), RoundingMode.HALF_EVEN);
+                return DecimalNode.valueOf(perturbed);
+            }
+        } else if (node.isFloatingPointNumber()) {
+            return DoubleNode.valueOf(node.doubleValue() * (1 + random.nextDouble(-MAX_PERTURBATION, MAX_PERTURBATION)));
+        }
+        return node;
+    }
+}
@@ -39,9 +39,28 @@ public interface TestPackConfigCreator {
      * @param outputSchemaMap - output Document type / xsd look up map
      * @param injector        - model runtime guice injector
      */
+    default void createPipelineAndTestPackConfig(ImmutableList<String> rosettaPaths,
+                                                 TestPackFilter filter,
+                                                 List<TestPackDef> testPackDefs,
+                                                 ImmutableMap<Class<?>, String> outputSchemaMap,
+                                                 Injector injector) {
+        createPipelineAndTestPackConfig(rosettaPaths, filter, testPackDefs, outputSchemaMap, injector, TestPackConfigOptions.create());
+    }
+
+    /**
+     * Generates pipeline and test-pack config files.
+     *
+     * @param rosettaPaths    - list of folders that contain rosetta model files, e.g. "drr/rosetta"
+     * @param filter          - provides filters to include or exclude
+     * @param testPackDefs    - provides list of test-pack information such as test pack name, input type and sample input paths
+     * @param outputSchemaMap - output Document type / xsd look up map
+     * @param injector        - model runtime guice injector
+     * @param options         - controls how the generation is run, e.g. the number of worker threads
+     */
     void createPipelineAndTestPackConfig(ImmutableList<String> rosettaPaths,
                                          TestPackFilter filter,
                                          List<TestPackDef> testPackDefs,
                                          ImmutableMap<Class<?>, String> outputSchemaMap,
-                                         Injector injector);
+                                         Injector injector,
+                                         TestPackConfigOptions options);
 }
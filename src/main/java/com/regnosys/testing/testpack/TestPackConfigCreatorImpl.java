@@ -21,17 +21,23 @@ package com.regnosys.testing.testpack;
  */
 
 import com.google.common.base.CaseFormat;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Binding;
 import com.google.inject.Injector;
+import com.google.inject.spi.InstanceBinding;
+import com.google.inject.spi.LinkedKeyBinding;
 import com.regnosys.rosetta.common.reports.RegReportPaths;
 import com.regnosys.rosetta.common.transform.PipelineModel;
 import com.regnosys.rosetta.common.transform.TestPackModel;
 import com.regnosys.rosetta.common.transform.TestPackUtils;
 import com.regnosys.rosetta.common.transform.TransformType;
-import com.regnosys.rosetta.common.util.Pair;
 import com.regnosys.rosetta.rosetta.RosettaModel;
 import com.regnosys.rosetta.rosetta.RosettaNamed;
 import com.regnosys.rosetta.rosetta.RosettaReport;
@@ -46,19 +52,28 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.regnosys.rosetta.common.transform.TestPackModel.SampleModel;
 import static com.regnosys.rosetta.common.transform.TestPackModel.SampleModel.Assertions;
 import static com.regnosys.rosetta.common.transform.TestPackUtils.*;
 import static com.regnosys.testing.TestingExpectationUtil.TEST_WRITE_BASE_PATH;
-import static com.regnosys.testing.TestingExpectationUtil.writeFile;
 import static com.regnosys.testing.projection.ProjectionPaths.getProjectionDataItemOutputPath;
+import static com.regnosys.testing.testpack.TestPackFunctionRunnerImpl.ROSETTA_SOURCE_PATH;
 
 public class TestPackConfigCreatorImpl implements TestPackConfigCreator {
     private final Logger LOGGER = LoggerFactory.getLogger(TestPackConfigCreatorImpl.class);
@@ -76,51 +91,122 @@ public class TestPackConfigCreatorImpl implements TestPackConfigCreator {
      * @param testPackDefs    - provides list of test-pack information such as test pack name, input type and sample input paths
      * @param outputSchemaMap - output Document type / xsd look up map
      * @param injector        - model runtime guice injector
+     * @param options         - controls how the generation is run, e.g. the number of worker threads
      */
     @Override
     public void createPipelineAndTestPackConfig(ImmutableList<String> rosettaPaths,
                                                 TestPackFilter filter,
                                                 List<TestPackDef> testPackDefs,
                                                 ImmutableMap<Class<?>, String> outputSchemaMap,
-                                                Injector injector) {
+                                                Injector injector,
+                                                TestPackConfigOptions options) {
         if (TEST_WRITE_BASE_PATH.isEmpty()) {
             LOGGER.error("TEST_WRITE_BASE_PATH not set");
             return;
         }
 
-        Path writePath = TEST_WRITE_BASE_PATH.get();
-        TestPackConfigWriter testPackConfigWriter = new TestPackConfigWriter(ObjectMapperGenerator.createWriterMapper());
+        ExecutorService executor = createExecutor(options.getParallelism());
+        try {
+            TestPackConfigWriter testPackConfigWriter = new TestPackConfigWriter(ObjectMapperGenerator.createWriterMapper());
+            TestPackInputCache inputCache = TestPackInputCache.create(options.getInputCacheSize());
+            TestPackTimingReport timingReport = new TestPackTimingReport();
+            TestPackGenerationContext context = new TestPackGenerationContext(TEST_WRITE_BASE_PATH.get(), options, testPackConfigWriter, executor, inputCache, timingReport);
+            createPipelineAndTestPackConfig(rosettaPaths, filter, testPackDefs, outputSchemaMap, injector, context);
+            inputCache.logStats();
+            options.getTimingReportPath().ifPresent(timingReport::write);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void createPipelineAndTestPackConfig(ImmutableList<String> rosettaPaths,
+                                                 TestPackFilter filter,
+                                                 List<TestPackDef> testPackDefs,
+                                                 ImmutableMap<Class<?>, String> outputSchemaMap,
+                                                 Injector injector,
+                                                 TestPackGenerationContext context) {
+        Path writePath = context.getWritePath();
+        TestPackConfigWriter testPackConfigWriter = context.getConfigWriter();
 
         LOGGER.info("Loading models");
         List<RosettaModel> rosettaModels = modelHelper.loadRosettaModels(rosettaPaths, this.getClass().getClassLoader());
 
         LOGGER.info("Report pipeline config");
+        TestPackModelIndex index = createModelIndex(rosettaModels, filter);
         List<RosettaReport> reports = modelHelper.getReports(rosettaModels, filter.getModelNamespaceRegex(), filter.getExcluded());
         List<PipelineModel> reportPipelines = reports.stream()
-                .map(this::createReportPipelineModel)
+                .map(report -> createReportPipelineModel(report, index))
                 .collect(Collectors.toList());
         reportPipelines.forEach(p -> testPackConfigWriter.writeConfigFile(writePath, REPORT_CONFIG_PATH, p.getId(), p));
 
+        if (context.getOptions().isPipelined()) {
+            LOGGER.info("Projection pipeline config");
+            List<PipelineModel> projectionPipelines = createProjectionPipelineModels(rosettaModels, filter, index);
+            projectionPipelines.forEach(p -> testPackConfigWriter.writeConfigFile(writePath, PROJECTION_CONFIG_PATH, p.getId(), p));
+
+            LOGGER.info("Report and projection test pack config");
+            List<TestPackProjectionStage> projectionStages = createProjectionStages(projectionPipelines, outputSchemaMap, injector, context);
+            Map<String, List<TestPackProjectionStage>> downstreamStages = projectionStages.stream()
+                    .collect(Collectors.groupingBy(stage -> stage.getPipeline().getUpstreamPipelineId()));
+            List<TestPackModel> reportTestPacks = createReportTestPacks(index, testPackDefs, filter, injector, context, downstreamStages);
+            reportTestPacks.forEach(testPackModel -> testPackConfigWriter.sortAndWriteConfigFile(writePath, REPORT_CONFIG_PATH, testPackModel));
+
+            List<TestPackModel> projectionTestPacks = collectProjectionTestPacks(projectionStages, reportTestPacks);
+            projectionTestPacks.forEach(testPackModel -> testPackConfigWriter.sortAndWriteConfigFile(writePath, PROJECTION_CONFIG_PATH, testPackModel));
+            return;
+        }
+
         LOGGER.info("Report test pack config");
-        List<TestPackModel> reportTestPacks = createReportTestPacks(reports, testPackDefs, filter, injector);
+        List<TestPackModel> reportTestPacks = createReportTestPacks(index, testPackDefs, filter, injector, context, Map.of());
         reportTestPacks.forEach(testPackModel -> testPackConfigWriter.sortAndWriteConfigFile(writePath, REPORT_CONFIG_PATH, testPackModel));
 
         LOGGER.info("Projection pipeline config");
-        List<Function> projections = getProjectionFunctions(rosettaModels, filter.getModelNamespaceRegex(), filter.getExcluded());
-        List<PipelineModel> projectionPipelines = projections.stream()
-                .map(f -> createProjectionPipelineModel(rosettaModels, f, filter.getExcluded()))
-                .collect(Collectors.toList());
+        List<PipelineModel> projectionPipelines = createProjectionPipelineModels(rosettaModels, filter, index);
         projectionPipelines.forEach(p -> testPackConfigWriter.writeConfigFile(writePath, PROJECTION_CONFIG_PATH, p.getId(), p));
 
         LOGGER.info("Projection test pack config");
-        List<TestPackModel> projectionTestPacks = createProjectionTestPacks(projectionPipelines, reports, reportTestPacks, outputSchemaMap, injector);
+        List<TestPackModel> projectionTestPacks = createProjectionTestPacks(projectionPipelines, index, reportTestPacks, outputSchemaMap, injector, context);
         projectionTestPacks.forEach(testPackModel -> testPackConfigWriter.sortAndWriteConfigFile(writePath, PROJECTION_CONFIG_PATH, testPackModel));
     }
 
-    protected PipelineModel createReportPipelineModel(RosettaReport report) {
-        ModelReportId reportId = toModelReportId(report);
+    private List<PipelineModel> createProjectionPipelineModels(List<RosettaModel> rosettaModels, TestPackFilter filter, TestPackModelIndex index) {
+        List<Function> projections = getProjectionFunctions(rosettaModels, filter.getModelNamespaceRegex(), filter.getExcluded());
+        return projections.stream()
+                .map(f -> createProjectionPipelineModel(f, index))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Builds the model lookups once, rather than scanning the reports and translating Java class names per test pack.
+     */
+    protected TestPackModelIndex createModelIndex(List<RosettaModel> rosettaModels, TestPackFilter filter) {
+        return TestPackModelIndex.create(
+                modelHelper.getReports(rosettaModels, filter.getModelNamespaceRegex(), filter.getExcluded()),
+                modelHelper.getReports(rosettaModels, null, filter.getExcluded()),
+                getProjectionFunctions(rosettaModels, filter.getModelNamespaceRegex(), filter.getExcluded()),
+                modelHelper,
+                this::toModelReportId,
+                this::createPipelineId);
+    }
+
+    /**
+     * Samples are run on a fixed size thread pool, or on the calling thread if parallelism is 1.
+     */
+    protected ExecutorService createExecutor(int parallelism) {
+        if (parallelism <= 1) {
+            return MoreExecutors.newDirectExecutorService();
+        }
+        LOGGER.info("Running samples on {} worker threads", parallelism);
+        return Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                .setNameFormat("test-pack-worker-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    protected PipelineModel createReportPipelineModel(RosettaReport report, TestPackModelIndex index) {
+        ModelReportId reportId = index.getModelReportId(report);
         String name = reportId.joinRegulatoryReference(" / ", " ");
-        return new PipelineModel(createPipelineId(reportId), name, getTransform(report), null, null);
+        return new PipelineModel(createPipelineId(reportId), name, getTransform(report, index), null, null);
     }
 
     protected String createPipelineId(ModelReportId reportId) {
@@ -128,11 +214,11 @@ public class TestPackConfigCreatorImpl implements TestPackConfigCreator {
         return String.format("pipeline-%s-%s", TransformType.REPORT.name().toLowerCase(), formattedId);
     }
 
-    protected PipelineModel.Transform getTransform(RosettaReport report) {
+    protected PipelineModel.Transform getTransform(RosettaReport report, TestPackModelIndex index) {
         return new PipelineModel.Transform(TransformType.REPORT,
-                modelHelper.toJavaClass(report),
-                modelHelper.toJavaClass(report.getInputType().getType()),
-                modelHelper.toJavaClass(report.getReportType())
+                index.getJavaClass(report),
+                index.getJavaClass(report.getInputType().getType()),
+                index.getJavaClass(report.getReportType())
         );
     }
 
@@ -140,11 +226,11 @@ public class TestPackConfigCreatorImpl implements TestPackConfigCreator {
         return new ArrayList<>(modelHelper.getFunctionsWithAnnotation(models, namespaceRegex, "projection", excluded));
     }
 
-    protected PipelineModel createProjectionPipelineModel(List<RosettaModel> models, Function func, Collection<Class<?>> excluded) {
+    protected PipelineModel createProjectionPipelineModel(Function func, TestPackModelIndex index) {
         String functionSimpleName = formatFunctionName(func.getName());
-        String upstreamPipelineId = getProjectionUpstreamPipelineId(models, func, excluded);
+        String upstreamPipelineId = getProjectionUpstreamPipelineId(func, index);
         PipelineModel.Serialisation outputSerialisation = getXmlOutputSerialisation(func);
-        return new PipelineModel(createPipelineId(func), functionSimpleName, getTransform(func), upstreamPipelineId, outputSerialisation);
+        return new PipelineModel(createPipelineId(func), functionSimpleName, getTransform(func, index), upstreamPipelineId, outputSerialisation);
     }
 
     protected String createPipelineId(Function func) {
@@ -170,16 +256,16 @@ public class TestPackConfigCreatorImpl implements TestPackConfigCreator {
                 .replace("ASIC", "Asic");
     }
 
-    protected PipelineModel.Transform getTransform(Function func) {
+    protected PipelineModel.Transform getTransform(Function func, TestPackModelIndex index) {
         return new PipelineModel.Transform(TransformType.PROJECTION,
-                modelHelper.toJavaClass(func),
-                modelHelper.toJavaClass(modelHelper.getInputType(func)),
-                modelHelper.toJavaClass(func.getOutput().getTypeCall().getType()));
+                index.getJavaClass(func),
+                index.getJavaClass(modelHelper.getInputType(func)),
+                index.getJavaClass(func.getOutput().getTypeCall().getType()));
     }
 
-    protected String getProjectionUpstreamPipelineId(List<RosettaModel> models, Function func, Collection<Class<?>> excluded) {
-        RosettaReport projectionUpstreamReport = modelHelper.getUpstreamReport(models, func, excluded);
-        ModelReportId modelReportId = toModelReportId(projectionUpstreamReport);
+    protected String getProjectionUpstreamPipelineId(Function func, TestPackModelIndex index) {
+        RosettaReport projectionUpstreamReport = index.getUpstreamReport(modelHelper.getInputType(func));
+        ModelReportId modelReportId = index.getModelReportId(projectionUpstreamReport);
         return createPipelineId(modelReportId);
     }
 
@@ -203,26 +289,31 @@ public class TestPackConfigCreatorImpl implements TestPackConfigCreator {
                 rosettaReport.getRegulatoryBody().getCorpusList().stream().map(RosettaNamed::getName).toArray(String[]::new));
     }
 
-    protected List<TestPackModel> createReportTestPacks(List<RosettaReport> reports, List<TestPackDef> testPackDefs, TestPackFilter filter, Injector injector) {
-        return testPackDefs.stream()
+    /**
+     * @param downstreamStages - projections to run as each report sample completes, keyed by upstream pipeline id
+     */
+    protected List<TestPackModel> createReportTestPacks(TestPackModelIndex index, List<TestPackDef> testPackDefs, TestPackFilter filter, Injector injector, TestPackGenerationContext context, Map<String, List<TestPackProjectionStage>> downstreamStages) {
+        // submit all test packs before waiting on any, so samples run concurrently across reports and test packs
+        List<CompletableFuture<TestPackModel>> reportTestPacks = testPackDefs.stream()
                 .map(testPack -> {
-                    List<RosettaReport> applicableReports = getApplicableReports(reports, testPack.getName(), testPack.getInputType(), filter.getReportTestPackMap(), filter.getTestPackReportMap());
+                    List<RosettaReport> applicableReports = getApplicableReports(index, testPack.getName(), testPack.getInputType(), filter.getReportTestPackMap(), filter.getTestPackReportMap());
                     return applicableReports.stream()
-                            .map(report -> createReportTestPack(testPack, report, injector)).collect(Collectors.toList());
+                            .map(report -> createReportTestPack(testPack, report, index, injector, context, downstreamStages)).collect(Collectors.toList());
                 }).flatMap(List::stream)
                 .collect(Collectors.toList());
+        return reportTestPacks.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
     }
 
-    protected List<RosettaReport> getApplicableReports(List<RosettaReport> reports,
+    protected List<RosettaReport> getApplicableReports(TestPackModelIndex index,
                                                        String testPackName,
                                                        String inputType,
                                                        ImmutableMultimap<Class<?>, String> reportIncludedTestPack,
                                                        ImmutableMultimap<String, Class<?>> testPackIncludedReport) {
-        return reports.stream()
-                .filter(r -> modelHelper.toJavaClass(r.getInputType().getType()).equals(inputType))
-                .filter(r -> filterApplicableTestPacksForReport(testPackName, toClass(modelHelper.toJavaClass(r)), reportIncludedTestPack))
-                .filter(r -> filterApplicableReportForTestPack(testPackName, toClass(modelHelper.toJavaClass(r)), testPackIncludedReport))
-                .sorted(Comparator.comparing(r -> modelHelper.toJavaClass(r)))
+        return index.getReports(inputType).stream()
+                .filter(r -> filterApplicableTestPacksForReport(testPackName, toClass(index.getJavaClass(r)), reportIncludedTestPack))
+                .filter(r -> filterApplicableReportForTestPack(testPackName, toClass(index.getJavaClass(r)), testPackIncludedReport))
                 .collect(Collectors.toList());
     }
 
@@ -245,33 +336,145 @@ public class TestPackConfigCreatorImpl implements TestPackConfigCreator {
         return applicableReportsForTestPack.isEmpty() || applicableReportsForTestPack.contains(clazz);
     }
 
-    protected TestPackModel createReportTestPack(TestPackDef testPack, RosettaReport report, Injector injector) {
-        ModelReportId reportId = toModelReportId(report);
-        PipelineModel.Transform transform = getTransform(report);
-        TestPackFunctionRunner functionRunner = functionRunnerProvider.create(transform, injector);
+    /**
+     * Each sample is submitted to the executor. The report function runner is shared by all samples of the test pack,
+     * so it must be safe to call from multiple threads.
+     */
+    protected CompletableFuture<TestPackModel> createReportTestPack(TestPackDef testPack, RosettaReport report, TestPackModelIndex index, Injector injector, TestPackGenerationContext context, Map<String, List<TestPackProjectionStage>> downstreamStages) {
+        ModelReportId reportId = index.getModelReportId(report);
+        PipelineModel.Transform transform = getTransform(report, index);
+        TestPackFunctionRunner functionRunner = withTimings(functionRunnerProvider.create(transform, context.getInputCache(), injector), createPipelineId(reportId), context);
+        List<TestPackProjectionStage> projectionStages = downstreamStages.getOrDefault(createPipelineId(reportId), List.of());
 
         String testPackName = testPack.getName();
-        List<SampleModel> sampleModelLists = testPack.getInputPaths().stream()
-                .map(targetLocation -> {
-                    String fileName = FileNameProcessor.removeFilePrefix(targetLocation);
-                    Path outputRelativePath = RegReportPaths.getDefault().getOutputRelativePath();
-                    Path inputPath = RegReportPaths.getDefault().getInputRelativePath().resolve(directoryName(testPackName)).resolve(fileName);
-                    Path outputPath = RegReportPaths.getReportExpectationFilePath(outputRelativePath, reportId, testPackName, inputPath);
-                    String baseFileName = getBaseFileName(inputPath);
-                    String displayName = baseFileName.replace("-", " ");
+        String formattedFunctionName = reportId.joinRegulatoryReference("-").toLowerCase();
+        TestPackManifest manifest = loadManifest(context, REPORT_CONFIG_PATH, testPackName, TransformType.REPORT, formattedFunctionName);
+        SampleFingerprint fingerprint = createFingerprint(context, transform, null, null, injector);
 
-                    Pair<String, Assertions> result = functionRunner.run(inputPath);
+        List<CompletableFuture<SampleModel>> samples = testPack.getInputPaths().stream()
+                .map(targetLocation -> CompletableFuture.supplyAsync(() -> createReportSample(testPackName, reportId, targetLocation, functionRunner, manifest, fingerprint, projectionStages, context), context.getExecutor()))
+                .collect(Collectors.toList());
+
+        return CompletableFuture.allOf(samples.toArray(CompletableFuture[]::new))
+                .thenApply(done -> {
+                    List<SampleModel> sampleModelLists = samples.stream()
+                            .map(CompletableFuture::join)
+                            .sorted(Comparator.comparing(SampleModel::getId))
+                            .collect(Collectors.toList());
+                    manifest.write();
+                    return TestPackUtils.createTestPack(testPackName, TransformType.REPORT, formattedFunctionName, sampleModelLists);
+                });
+    }
+
+    protected SampleModel createReportSample(String testPackName, ModelReportId reportId, String targetLocation, TestPackFunctionRunner functionRunner, TestPackManifest manifest, SampleFingerprint fingerprint, List<TestPackProjectionStage> projectionStages, TestPackGenerationContext context) {
+        String fileName = FileNameProcessor.removeFilePrefix(targetLocation);
+        Path outputRelativePath = RegReportPaths.getDefault().getOutputRelativePath();
+        Path inputPath = RegReportPaths.getDefault().getInputRelativePath().resolve(directoryName(testPackName)).resolve(fileName);
+        Path outputPath = RegReportPaths.getReportExpectationFilePath(outputRelativePath, reportId, testPackName, inputPath);
+        String baseFileName = getBaseFileName(inputPath);
+        String displayName = baseFileName.replace("-", " ");
+        String sampleId = baseFileName.toLowerCase();
+
+        AtomicReference<RosettaModelObject> reportOutput = new AtomicReference<>();
+        SampleModel reportSample = runOrReuseSample(manifest, sampleId, fingerprint, inputPath, outputPath, () -> {
+            TestPackFunctionResult result = functionRunner.run(inputPath);
+            reportOutput.set(result.getOutput());
+            return result;
+        }, assertions -> new SampleModel(sampleId, displayName, inputPath.toString(), outputPath.toString(), assertions));
+
+        // if the report sample was reused there is no output in memory, so the projections read it from disk
+        projectionStages.forEach(stage -> submitProjectionSample(stage, testPackName, reportId, reportSample, reportOutput.get(), context));
+        return reportSample;
+    }
 
-                    writeOutputFile(outputPath, result.left());
-                    Assertions assertions = result.right();
+    /**
+     * Adds the stage timings of every sample run to the timing report of the pipeline.
+     */
+    protected TestPackFunctionRunner withTimings(TestPackFunctionRunner functionRunner, String pipelineId, TestPackGenerationContext context) {
+        TestPackTimingReport timingReport = context.getTimingReport();
+        return new TestPackFunctionRunner() {
+            @Override
+            public TestPackFunctionResult run(Path inputPath) {
+                TestPackFunctionResult result = functionRunner.run(inputPath);
+                timingReport.add(pipelineId, result.getTimings());
+                return result;
+            }
+
+            @Override
+            public TestPackFunctionResult run(RosettaModelObject input) {
+                TestPackFunctionResult result = functionRunner.run(input);
+                timingReport.add(pipelineId, result.getTimings());
+                return result;
+            }
+        };
+    }
 
-                    return new SampleModel(baseFileName.toLowerCase(), displayName, inputPath.toString(), outputPath.toString(), assertions);
+    /**
+     * Loads the manifest of the test pack, or a disabled manifest if incremental generation is off.
+     */
+    protected TestPackManifest loadManifest(TestPackGenerationContext context, Path configPath, String testPackName, TransformType transformType, String formattedFunctionName) {
+        return context.getOptions().getManifestPath()
+                .map(manifestPath -> {
+                    String testPackId = TestPackUtils.createTestPack(testPackName, transformType, formattedFunctionName, List.of()).getId();
+                    Path manifestFile = manifestPath.resolve(configPath).resolve(testPackId + ".json");
+                    return TestPackManifest.load(manifestFile, context.getConfigWriter().readConfigFile(context.getWritePath(), configPath, testPackId));
                 })
-                .sorted(Comparator.comparing(SampleModel::getId))
-                .collect(Collectors.toList());
+                .orElseGet(TestPackManifest::disabled);
+    }
 
-        String formattedFunctionName = reportId.joinRegulatoryReference("-").toLowerCase();
-        return TestPackUtils.createTestPack(testPackName, TransformType.REPORT, formattedFunctionName, sampleModelLists);
+    /**
+     * Creates the sample independent part of the fingerprint, or null if incremental generation is off.
+     */
+    protected SampleFingerprint createFingerprint(TestPackGenerationContext context, PipelineModel.Transform transform, PipelineModel.Serialisation outputSerialisation, String xsdSchema, Injector injector) {
+        if (context.getOptions().getManifestPath().isEmpty()) {
+            return null;
+        }
+        Class<?> functionImplementation = injector.getInstance(toClass(transform.getFunction())).getClass();
+        String serialisation = Optional.ofNullable(outputSerialisation)
+                .map(s -> s.getFormat() + ":" + s.getConfigPath())
+                .orElse(null);
+        return new SampleFingerprint(null, functionImplementation.getName(), SampleFingerprint.hashFunction(functionImplementation, getBoundImplementations(injector)), serialisation, xsdSchema);
+    }
+
+    /**
+     * Implementations bound by the injector to each type, e.g. by the runtime module, so the fingerprint covers the
+     * implementations of the reachable types that are not referenced by the function code itself.
+     */
+    private static Multimap<String, String> getBoundImplementations(Injector injector) {
+        Multimap<String, String> boundImplementations = HashMultimap.create();
+        for (Binding<?> binding : injector.getAllBindings().values()) {
+            Class<?> boundType = binding.getKey().getTypeLiteral().getRawType();
+            if (binding instanceof LinkedKeyBinding) {
+                Class<?> implementation = ((LinkedKeyBinding<?>) binding).getLinkedKey().getTypeLiteral().getRawType();
+                boundImplementations.put(SampleFingerprint.toInternalName(boundType), SampleFingerprint.toInternalName(implementation));
+            } else if (binding instanceof InstanceBinding) {
+                Class<?> implementation = ((InstanceBinding<?>) binding).getInstance().getClass();
+                boundImplementations.put(SampleFingerprint.toInternalName(boundType), SampleFingerprint.toInternalName(implementation));
+            }
+        }
+        return boundImplementations;
+    }
+
+    /**
+     * Reuses the previously generated sample if nothing it depends on has changed and its output file is as it was
+     * written, otherwise runs it and writes the output file.
+     */
+    protected SampleModel runOrReuseSample(TestPackManifest manifest, String sampleId, SampleFingerprint fingerprint, Path inputPath, Path outputPath, Supplier<TestPackFunctionResult> sampleRunner, java.util.function.Function<Assertions, SampleModel> sampleModelFactory) {
+        Path outputFile = TEST_WRITE_BASE_PATH.get().resolve(outputPath);
+        SampleFingerprint sampleFingerprint = null;
+        if (manifest.isEnabled()) {
+            sampleFingerprint = fingerprint.withInputHash(SampleFingerprint.hashFile(ROSETTA_SOURCE_PATH.resolve(inputPath)));
+            Optional<SampleModel> unchanged = manifest.getUnchanged(sampleId, sampleFingerprint, outputFile);
+            if (unchanged.isPresent()) {
+                return unchanged.get();
+            }
+        }
+        TestPackFunctionResult result = sampleRunner.get();
+        writeOutputFile(outputPath, result.getSerialisedOutput());
+        if (manifest.isEnabled()) {
+            manifest.update(sampleId, sampleFingerprint, result.getOutputHash());
+        }
+        return sampleModelFactory.apply(result.getAssertions());
     }
 
     private String getBaseFileName(Path inputPath) {
@@ -280,44 +483,89 @@ public class TestPackConfigCreatorImpl implements TestPackConfigCreator {
                 .replace("-report", "");
     }
 
-    protected List<TestPackModel> createProjectionTestPacks(List<PipelineModel> projectionPipelines, List<RosettaReport> reports, List<TestPackModel> reportTestPacks, ImmutableMap<Class<?>, String> outputSchemaMap, Injector injector) {
+    /**
+     * Projection samples are run on the executor, sharing the pooled schema validation of each projection runner.
+     */
+    protected List<TestPackModel> createProjectionTestPacks(List<PipelineModel> projectionPipelines, TestPackModelIndex index, List<TestPackModel> reportTestPacks, ImmutableMap<Class<?>, String> outputSchemaMap, Injector injector, TestPackGenerationContext context) {
         return projectionPipelines.stream()
                 .map(p -> {
-                    TestPackFunctionRunner functionRunner = functionRunnerProvider.create(p.getTransform(), p.getOutputSerialisation(), outputSchemaMap, injector);
+                    TestPackFunctionRunner functionRunner = withTimings(functionRunnerProvider.create(p.getTransform(), p.getOutputSerialisation(), outputSchemaMap, context.getInputCache(), injector), p.getId(), context);
+                    String formattedFunctionName = createIdSuffix(p.getTransform().getFunction());
+                    String xsdSchema = outputSchemaMap.get(toClass(p.getTransform().getOutputType()));
                     return reportTestPacks.stream()
                             .filter(rtp -> rtp.getPipelineId().equals(p.getUpstreamPipelineId()))
-                            .map(upstreamReportTestPack ->
-                                    TestPackUtils.createTestPack(upstreamReportTestPack.getName(),
-                                            TransformType.PROJECTION,
-                                            createIdSuffix(p.getTransform().getFunction()),
-                                            upstreamReportTestPack.getSamples().stream()
-                                                    .map(s -> toProjectionSample(upstreamReportTestPack.getName(), getModelReportId(reports, upstreamReportTestPack.getPipelineId()), s, functionRunner))
-                                                    .collect(Collectors.toList()))
-                            )
+                            .map(upstreamReportTestPack -> {
+                                TestPackManifest manifest = loadManifest(context, PROJECTION_CONFIG_PATH, upstreamReportTestPack.getName(), TransformType.PROJECTION, formattedFunctionName);
+                                SampleFingerprint fingerprint = createFingerprint(context, p.getTransform(), p.getOutputSerialisation(), xsdSchema, injector);
+                                ModelReportId reportId = index.getModelReportId(upstreamReportTestPack.getPipelineId());
+                                List<CompletableFuture<SampleModel>> samples = upstreamReportTestPack.getSamples().stream()
+                                        .map(s -> CompletableFuture.supplyAsync(() -> toProjectionSample(upstreamReportTestPack.getName(), reportId, s, null, functionRunner, manifest, fingerprint), context.getExecutor()))
+                                        .collect(Collectors.toList());
+                                TestPackModel projectionTestPack = TestPackUtils.createTestPack(upstreamReportTestPack.getName(),
+                                        TransformType.PROJECTION,
+                                        formattedFunctionName,
+                                        samples.stream()
+                                                .map(CompletableFuture::join)
+                                                .collect(Collectors.toList()));
+                                manifest.write();
+                                return projectionTestPack;
+                            })
                             .collect(Collectors.toList());
                 })
                 .flatMap(Collection::stream)
                 .collect(Collectors.toList());
     }
 
-    protected ModelReportId getModelReportId(List<RosettaReport> reports, String pipelineId) {
-        return reports.stream()
-                .map(this::toModelReportId)
-                .filter(reportId -> createPipelineId(reportId).equals(pipelineId))
-                .findFirst()
-                .orElseThrow();
+    protected List<TestPackProjectionStage> createProjectionStages(List<PipelineModel> projectionPipelines, ImmutableMap<Class<?>, String> outputSchemaMap, Injector injector, TestPackGenerationContext context) {
+        return projectionPipelines.stream()
+                .map(p -> {
+                    TestPackFunctionRunner functionRunner = withTimings(functionRunnerProvider.create(p.getTransform(), p.getOutputSerialisation(), outputSchemaMap, context.getInputCache(), injector), p.getId(), context);
+                    String formattedFunctionName = createIdSuffix(p.getTransform().getFunction());
+                    String xsdSchema = outputSchemaMap.get(toClass(p.getTransform().getOutputType()));
+                    SampleFingerprint fingerprint = createFingerprint(context, p.getTransform(), p.getOutputSerialisation(), xsdSchema, injector);
+                    return new TestPackProjectionStage(p, functionRunner, formattedFunctionName, fingerprint,
+                            testPackName -> loadManifest(context, PROJECTION_CONFIG_PATH, testPackName, TransformType.PROJECTION, formattedFunctionName));
+                })
+                .collect(Collectors.toList());
+    }
+
+    protected void submitProjectionSample(TestPackProjectionStage stage, String testPackName, ModelReportId reportId, SampleModel reportSample, RosettaModelObject reportOutput, TestPackGenerationContext context) {
+        TestPackManifest manifest = stage.getManifest(testPackName);
+        CompletableFuture<SampleModel> projectionSample = CompletableFuture.supplyAsync(() ->
+                toProjectionSample(testPackName, reportId, reportSample, reportOutput, stage.getFunctionRunner(), manifest, stage.getFingerprint()), context.getExecutor());
+        stage.submit(projectionSample, testPackName);
     }
 
-    protected SampleModel toProjectionSample(String testPackName, ModelReportId reportId, SampleModel reportSample, TestPackFunctionRunner functionRunner) {
+    /**
+     * Creates a projection test pack for each upstream report test pack, from the samples collected by each stage.
+     */
+    protected List<TestPackModel> collectProjectionTestPacks(List<TestPackProjectionStage> projectionStages, List<TestPackModel> reportTestPacks) {
+        return projectionStages.stream()
+                .map(stage -> reportTestPacks.stream()
+                        .filter(rtp -> rtp.getPipelineId().equals(stage.getPipeline().getUpstreamPipelineId()))
+                        .map(upstreamReportTestPack -> {
+                            String testPackName = upstreamReportTestPack.getName();
+                            List<SampleModel> samples = stage.getSamples(testPackName);
+                            stage.getManifest(testPackName).write();
+                            return TestPackUtils.createTestPack(testPackName, TransformType.PROJECTION, stage.getFormattedFunctionName(), samples);
+                        })
+                        .collect(Collectors.toList()))
+                .flatMap(Collection::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param reportOutput - the upstream report output object if still in memory, otherwise null and the report
+     *                     output file is read
+     */
+    protected SampleModel toProjectionSample(String testPackName, ModelReportId reportId, SampleModel reportSample, RosettaModelObject reportOutput, TestPackFunctionRunner functionRunner, TestPackManifest manifest, SampleFingerprint fingerprint) {
         Path projectionInputPath = Path.of(reportSample.getOutputPath());
         Path projectionTestPackPath = RegReportPaths.getOutputDataSetPath(PROJECTION_OUTPUT_PATH, reportId, testPackName);
         Path outputPath = getProjectionDataItemOutputPath(projectionTestPackPath, projectionInputPath);
 
-        Pair<String, Assertions> result = functionRunner.run(projectionInputPath);
-        writeOutputFile(outputPath, result.left());
-        Assertions assertions = result.right();
-
-        return new SampleModel(reportSample.getId(), reportSample.getName(), projectionInputPath.toString(), outputPath.toString(), assertions);
+        return runOrReuseSample(manifest, reportSample.getId(), fingerprint, projectionInputPath, outputPath,
+                () -> reportOutput != null ? functionRunner.run(reportOutput) : functionRunner.run(projectionInputPath),
+                assertions -> new SampleModel(reportSample.getId(), reportSample.getName(), projectionInputPath.toString(), outputPath.toString(), assertions));
     }
 
     protected String directoryName(String name) {
@@ -327,7 +575,18 @@ public class TestPackConfigCreatorImpl implements TestPackConfigCreator {
                 .trim().toLowerCase();
     }
 
-    private void writeOutputFile(Path outputPath, String serialisedOutput) {
-        writeFile(TEST_WRITE_BASE_PATH.get().resolve(outputPath), serialisedOutput, true);
+    private void writeOutputFile(Path outputPath, SerialisedOutput serialisedOutput) {
+        Path writePath = TEST_WRITE_BASE_PATH.get().resolve(outputPath);
+        if (serialisedOutput == null) {
+            LOGGER.warn("No output to write to {}", writePath);
+            return;
+        }
+        try {
+            Files.createDirectories(writePath.getParent());
+            serialisedOutput.writeTo(writePath);
+            LOGGER.info("Wrote output to {}", writePath);
+        } catch (IOException e) {
+            LOGGER.error("Failed to write output to {}", writePath, e);
+        }
     }
 }
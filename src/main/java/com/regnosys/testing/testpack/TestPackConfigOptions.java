@@ -0,0 +1,148 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Options that control how the test pack config generation is run, as opposed to {@link TestPackFilter} which
+ * controls what is generated.
+ */
+public class TestPackConfigOptions {
+
+    private static final long DEFAULT_INPUT_CACHE_SIZE = 256L * 1024 * 1024;
+    private static final Path DEFAULT_TIMING_REPORT_PATH = Path.of("target", "test-pack-timings");
+
+    public static TestPackConfigOptions create() {
+        return new TestPackConfigOptions(1, null, false, DEFAULT_INPUT_CACHE_SIZE, null);
+    }
+
+    /**
+     * Number of worker threads used to run samples, e.g. Runtime.getRuntime().availableProcessors().
+     * A value of 1 (the default) runs every sample sequentially on the calling thread.
+     */
+    public TestPackConfigOptions withParallelism(int parallelism) {
+        return new TestPackConfigOptions(parallelism,
+                this.manifestPath,
+                this.pipelined,
+                this.inputCacheSize,
+                this.timingReportPath);
+    }
+
+    /**
+     * Enables incremental generation. Samples whose input, function bytecode and output config are unchanged since
+     * the last run are skipped, and their previous assertions reused. The sample manifests are kept under this
+     * local directory, e.g. "target/test-pack-manifest".
+     */
+    public TestPackConfigOptions withManifestPath(Path manifestPath) {
+        return new TestPackConfigOptions(this.parallelism,
+                manifestPath,
+                this.pipelined,
+                this.inputCacheSize,
+                this.timingReportPath);
+    }
+
+    /**
+     * Runs the projections of each report sample as soon as the report sample completes, passing the report output
+     * object directly to the projection function rather than reading the report output file back from disk.
+     */
+    public TestPackConfigOptions withPipelining(boolean pipelined) {
+        return new TestPackConfigOptions(this.parallelism,
+                this.manifestPath,
+                pipelined,
+                this.inputCacheSize,
+                this.timingReportPath);
+    }
+
+    /**
+     * Maximum estimated heap footprint, in bytes, of the parsed sample inputs shared between the reports of a test
+     * pack. Defaults to 256MB, and 0 disables the cache.
+     */
+    public TestPackConfigOptions withInputCacheSize(long inputCacheSize) {
+        return new TestPackConfigOptions(this.parallelism,
+                this.manifestPath,
+                this.pipelined,
+                inputCacheSize,
+                this.timingReportPath);
+    }
+
+    /**
+     * Writes the wall time and allocated bytes of each stage of running the samples, aggregated per pipeline, to
+     * {@link TestPackTimingReport#JSON_FILE_NAME} and {@link TestPackTimingReport#CSV_FILE_NAME} in the local
+     * directory "target/test-pack-timings".
+     */
+    public TestPackConfigOptions withTimingReport(boolean timingReport) {
+        return withTimingReportPath(timingReport ? DEFAULT_TIMING_REPORT_PATH : null);
+    }
+
+    /**
+     * Writes the timing report, see {@link #withTimingReport}, to this local directory instead.
+     */
+    public TestPackConfigOptions withTimingReportPath(Path timingReportPath) {
+        return new TestPackConfigOptions(this.parallelism,
+                this.manifestPath,
+                this.pipelined,
+                this.inputCacheSize,
+                timingReportPath);
+    }
+
+    private final int parallelism;
+    private final Path manifestPath;
+    private final boolean pipelined;
+    private final long inputCacheSize;
+    private final Path timingReportPath;
+
+    private TestPackConfigOptions(int parallelism,
+                                  Path manifestPath,
+                                  boolean pipelined,
+                                  long inputCacheSize,
+                                  Path timingReportPath) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, but was " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.manifestPath = manifestPath;
+        this.pipelined = pipelined;
+        this.inputCacheSize = inputCacheSize;
+        this.timingReportPath = timingReportPath;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public Optional<Path> getManifestPath() {
+        return Optional.ofNullable(manifestPath);
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    public long getInputCacheSize() {
+        return inputCacheSize;
+    }
+
+    public Optional<Path> getTimingReportPath() {
+        return Optional.ofNullable(timingReportPath);
+    }
+}
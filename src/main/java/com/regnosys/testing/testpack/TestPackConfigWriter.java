@@ -38,6 +38,7 @@ import java.nio.file.Path;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 public class TestPackConfigWriter {
@@ -75,6 +76,21 @@ public class TestPackConfigWriter {
         }
     }
 
+    /**
+     * Reads a test pack config file previously written by {@link #writeConfigFile}, if it exists.
+     */
+    public Optional<TestPackModel> readConfigFile(Path resourcesPath, Path configPath, String id) {
+        Path fullPath = resourcesPath.resolve(generateTestPackModelFilePath(configPath, id));
+        if (!Files.exists(fullPath)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(writeMapper.readValue(fullPath.toFile(), TestPackModel.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     private TestPackModel sortSamples(TestPackModel testPackModel) {
         List<SampleModel> sampleModels = testPackModel.getSamples()
                 .stream()
@@ -0,0 +1,76 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.rosetta.model.lib.RosettaModelObject;
+
+import static com.regnosys.rosetta.common.transform.TestPackModel.SampleModel.Assertions;
+
+/**
+ * Result of running a function on a single sample.
+ */
+class TestPackFunctionResult {
+    private final SerialisedOutput serialisedOutput;
+    private final Assertions assertions;
+    private final RosettaModelObject output;
+    private final SampleTimings timings;
+
+    TestPackFunctionResult(SerialisedOutput serialisedOutput, Assertions assertions, RosettaModelObject output, SampleTimings timings) {
+        this.serialisedOutput = serialisedOutput;
+        this.assertions = assertions;
+        this.output = output;
+        this.timings = timings;
+    }
+
+    static TestPackFunctionResult error(SampleTimings timings) {
+        return new TestPackFunctionResult(null, new Assertions(null, null, true), null, timings);
+    }
+
+    /**
+     * Serialised output, or null if the function failed.
+     */
+    SerialisedOutput getSerialisedOutput() {
+        return serialisedOutput;
+    }
+
+    /**
+     * SHA-256 hash of the output file content, or null if the function failed. Only computed when asked for, i.e. when
+     * the sample is recorded in a manifest.
+     */
+    String getOutputHash() {
+        return serialisedOutput == null ? null : serialisedOutput.hash();
+    }
+
+    Assertions getAssertions() {
+        return assertions;
+    }
+
+    /**
+     * Function output, or null if the function failed. Can be passed directly to a downstream function runner.
+     */
+    RosettaModelObject getOutput() {
+        return output;
+    }
+
+    SampleTimings getTimings() {
+        return timings;
+    }
+}
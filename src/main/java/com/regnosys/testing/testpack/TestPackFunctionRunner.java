@@ -20,12 +20,15 @@ package com.regnosys.testing.testpack;
  * ===============
  */
 
-import com.regnosys.rosetta.common.util.Pair;
+import com.rosetta.model.lib.RosettaModelObject;
 
 import java.nio.file.Path;
 
-import static com.regnosys.rosetta.common.transform.TestPackModel.SampleModel.Assertions;
-
 interface TestPackFunctionRunner {
-    Pair<String, Assertions> run(Path inputPath);
+    TestPackFunctionResult run(Path inputPath);
+
+    /**
+     * Runs the function on an input that is already in memory, e.g. the output of an upstream function.
+     */
+    TestPackFunctionResult run(RosettaModelObject input);
 }
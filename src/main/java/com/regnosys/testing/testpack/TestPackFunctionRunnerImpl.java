@@ -20,32 +20,25 @@ package com.regnosys.testing.testpack;
  * ===============
  */
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.regnosys.rosetta.common.hashing.ReferenceConfig;
 import com.regnosys.rosetta.common.hashing.ReferenceResolverProcessStep;
-import com.regnosys.rosetta.common.util.Pair;
 import com.regnosys.rosetta.common.validation.RosettaTypeValidator;
 import com.regnosys.rosetta.common.validation.ValidationReport;
+import com.regnosys.testing.validation.XsdValidationService;
 import com.rosetta.model.lib.RosettaModelObject;
 import com.rosetta.model.lib.RosettaModelObjectBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xml.sax.SAXException;
 
-import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.Validator;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import static com.regnosys.rosetta.common.transform.TestPackModel.SampleModel.Assertions;
-import static com.regnosys.rosetta.common.transform.TestPackUtils.readFile;
+import static com.regnosys.testing.testpack.SampleTimings.Stage;
 import static com.regnosys.testing.testpack.TestPackFunctionRunnerProviderImpl.JSON_OBJECT_MAPPER;
 
 class TestPackFunctionRunnerImpl<IN extends RosettaModelObject> implements TestPackFunctionRunner {
@@ -57,7 +50,10 @@ class TestPackFunctionRunnerImpl<IN extends RosettaModelObject> implements TestP
     private final RosettaTypeValidator typeValidator;
     private final ReferenceConfig referenceConfig;
     private final ObjectWriter outputObjectWriter;
-    private final Validator xsdValidator;
+    private final XsdValidationService xsdValidator;
+    private final TestPackInputCache inputCache;
+    // initial buffer size, so the buffer rarely needs to grow while serialising similar samples
+    private final AtomicInteger lastOutputSize = new AtomicInteger(8192);
 
 
     public TestPackFunctionRunnerImpl(Function<IN, RosettaModelObject> function,
@@ -65,46 +61,89 @@ class TestPackFunctionRunnerImpl<IN extends RosettaModelObject> implements TestP
                                       RosettaTypeValidator typeValidator,
                                       ReferenceConfig referenceConfig,
                                       ObjectWriter outputObjectWriter,
-                                      Validator xsdValidator) {
+                                      XsdValidationService xsdValidator,
+                                      TestPackInputCache inputCache) {
         this.function = function;
         this.inputType = inputType;
         this.typeValidator = typeValidator;
         this.referenceConfig = referenceConfig;
         this.outputObjectWriter = outputObjectWriter;
         this.xsdValidator = xsdValidator;
+        this.inputCache = inputCache;
     }
 
     @Override
-    public Pair<String, Assertions> run(Path inputPath) {
-        RosettaModelObject output;
+    public TestPackFunctionResult run(Path inputPath) {
+        SampleTimings timings = new SampleTimings();
+        IN resolvedInput;
         try {
             Path inputPathFromRepositoryRoot = ROSETTA_SOURCE_PATH.resolve(inputPath);
-            URL inputFileUrl = inputPathFromRepositoryRoot.toUri().toURL();
-            IN input = readFile(inputFileUrl, JSON_OBJECT_MAPPER, inputType);
-            output = function.apply(resolveReferences(input));
-        } catch (MalformedURLException e) {
+            // the input is shared by every report of the test pack, so is parsed and resolved once and reused
+            resolvedInput = inputCache.get(inputPathFromRepositoryRoot, inputType, () -> {
+                byte[] inputBytes = timings.time(Stage.READ, () -> Files.readAllBytes(inputPathFromRepositoryRoot));
+                IN input = timings.time(Stage.PARSE, () -> JSON_OBJECT_MAPPER.readValue(inputBytes, inputType));
+                return timings.time(Stage.RESOLVE, () -> resolveReferences(input));
+            });
+        } catch (IOException e) {
             LOGGER.error("Failed to load input path {}", inputPath, e);
-            return Pair.of(null, new Assertions(null, null, true));
+            return TestPackFunctionResult.error(timings);
         } catch (Exception e) {
             LOGGER.error("Exception occurred running sample creation", e);
-            return Pair.of(null, new Assertions(null, null, true));
+            return TestPackFunctionResult.error(timings);
         }
+        return runResolved(resolvedInput, timings);
+    }
 
-        String serialisedOutput;
+    @Override
+    public TestPackFunctionResult run(RosettaModelObject input) {
+        SampleTimings timings = new SampleTimings();
+        IN resolvedInput;
         try {
-            serialisedOutput = outputObjectWriter.writeValueAsString(output);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException("Failed to serialise function output", e);
+            resolvedInput = timings.time(Stage.RESOLVE, () -> resolveReferences(inputType.cast(input)));
+        } catch (Exception e) {
+            LOGGER.error("Exception occurred running sample creation", e);
+            return TestPackFunctionResult.error(timings);
+        }
+        return runResolved(resolvedInput, timings);
+    }
+
+    private TestPackFunctionResult runResolved(IN resolvedInput, SampleTimings timings) {
+        RosettaModelObject output;
+        try {
+            output = timings.time(Stage.EVALUATE, () -> function.apply(resolvedInput));
+        } catch (Exception e) {
+            LOGGER.error("Exception occurred running sample creation", e);
+            return TestPackFunctionResult.error(timings);
         }
 
-        ValidationReport validationReport = typeValidator.runProcessStep(output.getType(), output);
-        validationReport.logReport();
-        int actualValidationFailures = validationReport.validationFailures().size();
+        try {
+            // serialised once, then read in place by the schema validator and the output file writer
+            SerialisedOutput serialisedOutput = timings.time(Stage.SERIALISE, () -> serialise(output));
+
+            ValidationReport validationReport = timings.time(Stage.TYPE_VALIDATION, () -> typeValidator.runProcessStep(output.getType(), output));
+            validationReport.logReport();
+            int actualValidationFailures = validationReport.validationFailures().size();
 
-        Boolean schemaValidationFailure = isSchemaValidationFailure(serialisedOutput);
+            Boolean schemaValidationFailure = timings.time(Stage.XSD_VALIDATION, () -> isSchemaValidationFailure(serialisedOutput));
 
-        Assertions assertions = new Assertions(actualValidationFailures, schemaValidationFailure, false);
-        return Pair.of(serialisedOutput, assertions);
+            Assertions assertions = new Assertions(actualValidationFailures, schemaValidationFailure, false);
+            return new TestPackFunctionResult(serialisedOutput, assertions, output, timings);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private SerialisedOutput serialise(RosettaModelObject output) {
+        SerialisedOutput serialisedOutput = new SerialisedOutput(lastOutputSize.get());
+        try {
+            outputObjectWriter.writeValue(serialisedOutput, output);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to serialise function output", e);
+        }
+        lastOutputSize.set(serialisedOutput.size());
+        return serialisedOutput;
     }
 
     private <T extends RosettaModelObject> T resolveReferences(T o) {
@@ -113,18 +152,10 @@ class TestPackFunctionRunnerImpl<IN extends RosettaModelObject> implements TestP
         return (T) builder.build();
     }
 
-    private Boolean isSchemaValidationFailure(String xml) {
+    private Boolean isSchemaValidationFailure(SerialisedOutput xml) {
         if (xsdValidator == null) {
             return null;
         }
-        try (ByteArrayInputStream inputStream = new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))) {
-            xsdValidator.validate(new StreamSource(inputStream));
-            return true;
-        } catch (SAXException e) {
-            LOGGER.error("Schema validation failed: {}", e.getMessage());
-            return false;
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
+        return xsdValidator.validate(xml.toInputStream());
     }
 }
@@ -30,7 +30,18 @@ import static com.regnosys.rosetta.common.transform.PipelineModel.Transform;
 @ImplementedBy(TestPackFunctionRunnerProviderImpl.class)
 public interface TestPackFunctionRunnerProvider {
     
-    TestPackFunctionRunner create(Transform transform, Injector injector);
+    default TestPackFunctionRunner create(Transform transform, Injector injector) {
+        return create(transform, TestPackInputCache.none(), injector);
+    }
 
-    TestPackFunctionRunner create(Transform transform, Serialisation outputSerialisation, ImmutableMap<Class<?>, String> outputSchemaMap, Injector injector);
+    default TestPackFunctionRunner create(Transform transform, Serialisation outputSerialisation, ImmutableMap<Class<?>, String> outputSchemaMap, Injector injector) {
+        return create(transform, outputSerialisation, outputSchemaMap, TestPackInputCache.none(), injector);
+    }
+
+    /**
+     * @param inputCache - parsed inputs shared with the other runners of the generation run
+     */
+    TestPackFunctionRunner create(Transform transform, TestPackInputCache inputCache, Injector injector);
+
+    TestPackFunctionRunner create(Transform transform, Serialisation outputSerialisation, ImmutableMap<Class<?>, String> outputSchemaMap, TestPackInputCache inputCache, Injector injector);
 }
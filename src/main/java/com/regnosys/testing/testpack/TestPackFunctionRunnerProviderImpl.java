@@ -30,16 +30,11 @@ import com.regnosys.rosetta.common.hashing.ReferenceConfig;
 import com.regnosys.rosetta.common.serialisation.RosettaObjectMapper;
 import com.regnosys.rosetta.common.transform.PipelineModel;
 import com.regnosys.rosetta.common.validation.RosettaTypeValidator;
+import com.regnosys.testing.transform.TransformFunctionFactory;
+import com.regnosys.testing.validation.XsdValidationService;
 import com.rosetta.model.lib.RosettaModelObject;
-import org.xml.sax.SAXException;
 
 import javax.inject.Inject;
-import javax.xml.XMLConstants;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
-import javax.xml.validation.Validator;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.net.URL;
 import java.util.Optional;
 import java.util.function.Function;
@@ -60,26 +55,26 @@ class TestPackFunctionRunnerProviderImpl implements TestPackFunctionRunnerProvid
     ReferenceConfig referenceConfig;
 
     @Override
-    public TestPackFunctionRunner create(PipelineModel.Transform transform, Injector injector) {
+    public TestPackFunctionRunner create(PipelineModel.Transform transform, TestPackInputCache inputCache, Injector injector) {
         Class<? extends RosettaModelObject> inputType = toClass(transform.getInputType());
         Class<?> functionType = toClass(transform.getFunction());
-        return createTestPackFunctionRunner(functionType, inputType, injector, JSON_OBJECT_WRITER, null);
+        return createTestPackFunctionRunner(functionType, inputType, injector, JSON_OBJECT_WRITER, null, inputCache);
     }
 
     @Override
-    public TestPackFunctionRunner create(PipelineModel.Transform transform, PipelineModel.Serialisation outputSerialisation, ImmutableMap<Class<?>, String> outputSchemaMap, Injector injector) {
+    public TestPackFunctionRunner create(PipelineModel.Transform transform, PipelineModel.Serialisation outputSerialisation, ImmutableMap<Class<?>, String> outputSchemaMap, TestPackInputCache inputCache, Injector injector) {
         Class<? extends RosettaModelObject> inputType = toClass(transform.getInputType());
         Class<?> outputType = toClass(transform.getOutputType());
         // Output serialisation
         ObjectWriter outputObjectWriter = getObjectWriter(outputSerialisation).orElse(JSON_OBJECT_WRITER);
         // XSD validation
-        Validator xsdValidator = getXsdValidator(outputType, outputSchemaMap);
-        return createTestPackFunctionRunner(toClass(transform.getFunction()), inputType, injector, outputObjectWriter, xsdValidator);
+        XsdValidationService xsdValidator = getXsdValidator(outputType, outputSchemaMap);
+        return createTestPackFunctionRunner(toClass(transform.getFunction()), inputType, injector, outputObjectWriter, xsdValidator, inputCache);
     }
 
-    private <IN extends RosettaModelObject> TestPackFunctionRunner createTestPackFunctionRunner(Class<?> functionType, Class<IN> inputType, Injector injector, ObjectWriter outputObjectWriter, Validator xsdValidator) {
+    private <IN extends RosettaModelObject> TestPackFunctionRunner createTestPackFunctionRunner(Class<?> functionType, Class<IN> inputType, Injector injector, ObjectWriter outputObjectWriter, XsdValidationService xsdValidator, TestPackInputCache inputCache) {
         Function<IN, RosettaModelObject> transformFunction = getTransformFunction(functionType, inputType, injector);
-        return new TestPackFunctionRunnerImpl<>(transformFunction, inputType, typeValidator, referenceConfig, outputObjectWriter, xsdValidator);
+        return new TestPackFunctionRunnerImpl<>(transformFunction, inputType, typeValidator, referenceConfig, outputObjectWriter, xsdValidator, inputCache);
     }
 
     private Class<? extends RosettaModelObject> toClass(String name) {
@@ -92,36 +87,16 @@ class TestPackFunctionRunnerProviderImpl implements TestPackFunctionRunnerProvid
 
     private <IN extends RosettaModelObject> Function<IN, RosettaModelObject> getTransformFunction(Class<?> functionType, Class<IN> inputType, Injector injector) {
         Object functionInstance = injector.getInstance(functionType);
-        Method evaluateMethod;
-        try {
-            evaluateMethod = functionInstance.getClass().getMethod("evaluate", inputType);
-        } catch (NoSuchMethodException e) {
-            throw new RuntimeException(String.format("Evaluate method with input type %s not found", inputType.getName()), e);
-        }
-        return (resolvedInput) -> {
-            try {
-                return (RosettaModelObject) evaluateMethod.invoke(functionInstance, resolvedInput);
-            } catch (IllegalAccessException | InvocationTargetException e) {
-                throw new RuntimeException("Failed to invoke evaluate method", e);
-            }
-        };
+        return TransformFunctionFactory.create(functionInstance, inputType);
     }
 
-    private Validator getXsdValidator(Class<?> functionType, ImmutableMap<Class<?>, String> outputSchemaMap) {
+    private XsdValidationService getXsdValidator(Class<?> functionType, ImmutableMap<Class<?>, String> outputSchemaMap) {
         URL schemaUrl = Optional.ofNullable(outputSchemaMap.get(functionType))
                 .map(r -> Resources.getResource(r))
                 .orElse(null);
         if (schemaUrl == null) {
             return null;
         }
-        try {
-            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            // required to process xml elements with an maxOccurs greater than 5000 (rather than unbounded)
-            schemaFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, false);
-            Schema schema = schemaFactory.newSchema(schemaUrl);
-            return schema.newValidator();
-        } catch (SAXException e) {
-            throw new RuntimeException(String.format("Failed to create schema validator for {}", schemaUrl), e);
-        }
+        return XsdValidationService.create(schemaUrl);
     }
 }
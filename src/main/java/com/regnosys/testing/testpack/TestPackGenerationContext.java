@@ -0,0 +1,74 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+
+/**
+ * State shared by all test packs of a single {@link TestPackConfigCreator} run.
+ */
+public class TestPackGenerationContext {
+    private final Path writePath;
+    private final TestPackConfigOptions options;
+    private final TestPackConfigWriter configWriter;
+    private final Executor executor;
+    private final TestPackInputCache inputCache;
+    private final TestPackTimingReport timingReport;
+
+    public TestPackGenerationContext(Path writePath,
+                                     TestPackConfigOptions options,
+                                     TestPackConfigWriter configWriter,
+                                     Executor executor,
+                                     TestPackInputCache inputCache,
+                                     TestPackTimingReport timingReport) {
+        this.writePath = writePath;
+        this.options = options;
+        this.configWriter = configWriter;
+        this.executor = executor;
+        this.inputCache = inputCache;
+        this.timingReport = timingReport;
+    }
+
+    public Path getWritePath() {
+        return writePath;
+    }
+
+    public TestPackConfigOptions getOptions() {
+        return options;
+    }
+
+    public TestPackConfigWriter getConfigWriter() {
+        return configWriter;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public TestPackInputCache getInputCache() {
+        return inputCache;
+    }
+
+    public TestPackTimingReport getTimingReport() {
+        return timingReport;
+    }
+}
@@ -0,0 +1,166 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.rosetta.model.lib.RosettaModelObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Bounded cache of parsed and reference resolved sample inputs, shared by all function runners of a generation run,
+ * so an input that applies to many reports is only parsed once.
+ * <p>
+ * Entries are keyed by input path, file size, last modified time and input type, so a lookup only reads the file
+ * attributes rather than the file, and are evicted by their estimated memory footprint.
+ */
+public class TestPackInputCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestPackInputCache.class);
+
+    /**
+     * Rough ratio of the heap footprint of a parsed model object to the size of its JSON file.
+     */
+    static final int FOOTPRINT_PER_FILE_BYTE = 4;
+
+    public static TestPackInputCache none() {
+        return new TestPackInputCache(null);
+    }
+
+    /**
+     * @param maximumFootprint - maximum estimated heap footprint of all cached inputs, in bytes
+     */
+    public static TestPackInputCache create(long maximumFootprint) {
+        if (maximumFootprint <= 0) {
+            return none();
+        }
+        Cache<Key, CachedInput> cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumFootprint)
+                .weigher((Key key, CachedInput input) -> input.footprint)
+                .recordStats()
+                .build();
+        return new TestPackInputCache(cache);
+    }
+
+    private final Cache<Key, CachedInput> cache;
+
+    private TestPackInputCache(Cache<Key, CachedInput> cache) {
+        this.cache = cache;
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Gets the cached input, or loads and caches it if the file is new or its size or last modified time has changed.
+     *
+     * @param inputFile - input file to key the cache on
+     * @param loader    - parses and resolves the input file
+     */
+    public <T extends RosettaModelObject> T get(Path inputFile, Class<T> inputType, Callable<T> loader) throws Exception {
+        if (cache == null || !Files.isRegularFile(inputFile)) {
+            return loader.call();
+        }
+        Key key = new Key(inputFile.toAbsolutePath().normalize(), Files.size(inputFile), Files.getLastModifiedTime(inputFile).toMillis(), inputType);
+        try {
+            CachedInput cachedInput = cache.get(key, () -> new CachedInput(loader.call(), estimateFootprint(inputFile)));
+            return inputType.cast(cachedInput.input);
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            Throwables.throwIfInstanceOf(e.getCause(), Exception.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+    public CacheStats getStats() {
+        return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
+    }
+
+    public void logStats() {
+        if (cache == null) {
+            return;
+        }
+        CacheStats stats = cache.stats();
+        LOGGER.info("Input cache hits {}, misses {}, hit rate {}, evictions {}",
+                stats.hitCount(),
+                stats.missCount(),
+                String.format("%.2f", stats.hitRate()),
+                stats.evictionCount());
+    }
+
+    private static int estimateFootprint(Path inputFile) {
+        try {
+            return (int) Math.min(Integer.MAX_VALUE, Files.size(inputFile) * FOOTPRINT_PER_FILE_BYTE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class CachedInput {
+        private final RosettaModelObject input;
+        private final int footprint;
+
+        private CachedInput(RosettaModelObject input, int footprint) {
+            this.input = input;
+            this.footprint = footprint;
+        }
+    }
+
+    private static class Key {
+        private final Path path;
+        private final long size;
+        private final long lastModified;
+        private final Class<?> inputType;
+
+        private Key(Path path, long size, long lastModified, Class<?> inputType) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.inputType = inputType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return size == key.size && lastModified == key.lastModified && Objects.equals(path, key.path) && Objects.equals(inputType, key.inputType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, lastModified, inputType);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.regnosys.rosetta.common.transform.TestPackModel;
+import com.regnosys.rosetta.common.transform.TestPackModel.SampleModel;
+import com.regnosys.testing.reports.ObjectMapperGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Local record of the {@link SampleFingerprint} and output file hash of each sample in a test pack, used to skip
+ * samples that have not changed since the last run. The manifest is not part of the generated config and should not
+ * be committed.
+ */
+public class TestPackManifest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestPackManifest.class);
+    private static final ObjectMapper MAPPER = ObjectMapperGenerator.createWriterMapper();
+
+    private final Path manifestFile;
+    private final Map<String, Entry> previousEntries;
+    private final Map<String, SampleModel> previousSamples;
+    private final Map<String, Entry> currentEntries = new ConcurrentHashMap<>();
+    private final AtomicInteger reused = new AtomicInteger();
+
+    private TestPackManifest(Path manifestFile, Map<String, Entry> previousEntries, Map<String, SampleModel> previousSamples) {
+        this.manifestFile = manifestFile;
+        this.previousEntries = previousEntries;
+        this.previousSamples = previousSamples;
+    }
+
+    /**
+     * Manifest that never reuses samples, used when incremental generation is off.
+     */
+    public static TestPackManifest disabled() {
+        return new TestPackManifest(null, Map.of(), Map.of());
+    }
+
+    /**
+     * @param manifestFile       - manifest file written by the previous run, may not exist
+     * @param previousTestPack   - test pack config written by the previous run, which holds the sample assertions to reuse
+     */
+    public static TestPackManifest load(Path manifestFile, Optional<TestPackModel> previousTestPack) {
+        Map<String, SampleModel> previousSamples = previousTestPack
+                .map(TestPackModel::getSamples)
+                .map(samples -> samples.stream().collect(Collectors.toMap(SampleModel::getId, Function.identity(), (a, b) -> a)))
+                .orElse(Map.of());
+        return new TestPackManifest(manifestFile, readManifestFile(manifestFile), previousSamples);
+    }
+
+    private static Map<String, Entry> readManifestFile(Path manifestFile) {
+        if (!Files.exists(manifestFile)) {
+            return Map.of();
+        }
+        try {
+            return MAPPER.readValue(manifestFile.toFile(), new TypeReference<Map<String, Entry>>() {});
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read manifest file {}, all samples will be run", manifestFile, e);
+            return Map.of();
+        }
+    }
+
+    public boolean isEnabled() {
+        return manifestFile != null;
+    }
+
+    /**
+     * Returns the previously generated sample if its fingerprint has not changed, and its output file still has the
+     * content it was written with, e.g. it has not been edited or truncated.
+     */
+    public Optional<SampleModel> getUnchanged(String sampleId, SampleFingerprint fingerprint, Path outputFile) {
+        if (!isEnabled() || fingerprint.getInputHash() == null || fingerprint.getFunctionHash() == null) {
+            return Optional.empty();
+        }
+        Entry previousEntry = previousEntries.get(sampleId);
+        if (previousEntry == null || previousEntry.getOutputHash() == null || !fingerprint.equals(previousEntry.getFingerprint())) {
+            return Optional.empty();
+        }
+        Optional<SampleModel> unchanged = Optional.ofNullable(previousSamples.get(sampleId))
+                .filter(s -> previousEntry.getOutputHash().equals(SampleFingerprint.hashFile(outputFile)));
+        unchanged.ifPresent(s -> {
+            currentEntries.put(sampleId, previousEntry);
+            reused.incrementAndGet();
+        });
+        return unchanged;
+    }
+
+    /**
+     * @param outputHash - hash of the output file written by the sample, see {@link SampleFingerprint#hashFile}, or
+     *                   null if no output was written
+     */
+    public void update(String sampleId, SampleFingerprint fingerprint, String outputHash) {
+        if (isEnabled()) {
+            currentEntries.put(sampleId, new Entry(fingerprint, outputHash));
+        }
+    }
+
+    /**
+     * Writes the fingerprints of the samples seen in this run, so samples that no longer exist are dropped.
+     */
+    public void write() {
+        if (!isEnabled()) {
+            return;
+        }
+        LOGGER.info("Reused {} of {} samples from {}", reused.get(), currentEntries.size(), manifestFile);
+        try {
+            Files.createDirectories(manifestFile.getParent());
+            MAPPER.writerWithDefaultPrettyPrinter().writeValue(manifestFile.toFile(), new TreeMap<>(currentEntries));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static class Entry {
+        private final SampleFingerprint fingerprint;
+        private final String outputHash;
+
+        @JsonCreator
+        public Entry(@JsonProperty("fingerprint") SampleFingerprint fingerprint,
+                     @JsonProperty("outputHash") String outputHash) {
+            this.fingerprint = fingerprint;
+            this.outputHash = outputHash;
+        }
+
+        public SampleFingerprint getFingerprint() {
+            return fingerprint;
+        }
+
+        public String getOutputHash() {
+            return outputHash;
+        }
+    }
+}
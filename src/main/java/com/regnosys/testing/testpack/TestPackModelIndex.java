@@ -0,0 +1,150 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.regnosys.rosetta.rosetta.RosettaReport;
+import com.regnosys.rosetta.rosetta.RosettaType;
+import com.regnosys.rosetta.rosetta.simple.Function;
+import com.rosetta.model.lib.ModelReportId;
+import org.eclipse.emf.ecore.EObject;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Immutable lookups over the loaded model, built once per config generation run so the generator does not repeatedly
+ * scan every report or translate the same element to its Java class name.
+ */
+public class TestPackModelIndex {
+
+    /**
+     * @param reports         - reports included by the filter, i.e. the reports test packs are generated for
+     * @param upstreamReports - reports that projections may consume, i.e. ignoring the namespace filter
+     * @param projections     - projection functions
+     * @param reportIdFunc    - creates the report id of a report
+     * @param pipelineIdFunc  - creates the report pipeline id of a report id
+     */
+    public static TestPackModelIndex create(List<RosettaReport> reports,
+                                            List<RosettaReport> upstreamReports,
+                                            List<Function> projections,
+                                            TestPackModelHelper modelHelper,
+                                            java.util.function.Function<RosettaReport, ModelReportId> reportIdFunc,
+                                            java.util.function.Function<ModelReportId, String> pipelineIdFunc) {
+        Map<EObject, String> javaClassNames = new HashMap<>();
+        Map<RosettaReport, ModelReportId> reportIds = new HashMap<>();
+        Map<String, ModelReportId> pipelineReportIds = new LinkedHashMap<>();
+        Map<RosettaType, RosettaReport> upstreamReportsByType = new LinkedHashMap<>();
+
+        for (RosettaReport report : ImmutableList.<RosettaReport>builder().addAll(reports).addAll(upstreamReports).build()) {
+            if (reportIds.containsKey(report)) {
+                continue;
+            }
+            javaClassNames.put(report, modelHelper.toJavaClass(report));
+            indexType(javaClassNames, report.getInputType().getType(), modelHelper);
+            indexType(javaClassNames, report.getReportType(), modelHelper);
+            ModelReportId reportId = reportIdFunc.apply(report);
+            reportIds.put(report, reportId);
+            pipelineReportIds.putIfAbsent(pipelineIdFunc.apply(reportId), reportId);
+        }
+        upstreamReports.forEach(r -> upstreamReportsByType.putIfAbsent(r.getReportType(), r));
+
+        for (Function projection : projections) {
+            javaClassNames.put(projection, modelHelper.toJavaClass(projection));
+            indexType(javaClassNames, modelHelper.getInputType(projection), modelHelper);
+            indexType(javaClassNames, projection.getOutput().getTypeCall().getType(), modelHelper);
+        }
+
+        ImmutableListMultimap.Builder<String, RosettaReport> reportsByInputType = ImmutableListMultimap.builder();
+        reports.stream()
+                .sorted(Comparator.comparing(javaClassNames::get))
+                .forEach(r -> reportsByInputType.put(javaClassNames.get(r.getInputType().getType()), r));
+
+        return new TestPackModelIndex(ImmutableMap.copyOf(javaClassNames),
+                ImmutableMap.copyOf(reportIds),
+                ImmutableMap.copyOf(pipelineReportIds),
+                ImmutableMap.copyOf(upstreamReportsByType),
+                reportsByInputType.build());
+    }
+
+    private static void indexType(Map<EObject, String> javaClassNames, RosettaType type, TestPackModelHelper modelHelper) {
+        if (!javaClassNames.containsKey(type)) {
+            javaClassNames.put(type, modelHelper.toJavaClass(type));
+        }
+    }
+
+    private final ImmutableMap<EObject, String> javaClassNames;
+    private final ImmutableMap<RosettaReport, ModelReportId> reportIds;
+    private final ImmutableMap<String, ModelReportId> pipelineReportIds;
+    private final ImmutableMap<RosettaType, RosettaReport> upstreamReports;
+    private final ImmutableListMultimap<String, RosettaReport> reportsByInputType;
+
+    private TestPackModelIndex(ImmutableMap<EObject, String> javaClassNames,
+                               ImmutableMap<RosettaReport, ModelReportId> reportIds,
+                               ImmutableMap<String, ModelReportId> pipelineReportIds,
+                               ImmutableMap<RosettaType, RosettaReport> upstreamReports,
+                               ImmutableListMultimap<String, RosettaReport> reportsByInputType) {
+        this.javaClassNames = javaClassNames;
+        this.reportIds = reportIds;
+        this.pipelineReportIds = pipelineReportIds;
+        this.upstreamReports = upstreamReports;
+        this.reportsByInputType = reportsByInputType;
+    }
+
+    /**
+     * Java class name of an indexed report, projection function, or their input and output types.
+     */
+    public String getJavaClass(EObject element) {
+        return Optional.ofNullable(javaClassNames.get(element))
+                .orElseThrow(() -> new IllegalArgumentException("Model element not indexed: " + element));
+    }
+
+    public ModelReportId getModelReportId(RosettaReport report) {
+        return Optional.ofNullable(reportIds.get(report))
+                .orElseThrow(() -> new IllegalArgumentException("Report not indexed: " + report));
+    }
+
+    public ModelReportId getModelReportId(String pipelineId) {
+        return Optional.ofNullable(pipelineReportIds.get(pipelineId))
+                .orElseThrow(() -> new IllegalArgumentException("No report found for pipeline " + pipelineId));
+    }
+
+    /**
+     * @return the first report that outputs the given report type
+     */
+    public RosettaReport getUpstreamReport(RosettaType reportType) {
+        return Optional.ofNullable(upstreamReports.get(reportType))
+                .orElseThrow(() -> new IllegalArgumentException("No upstream report found for type " + reportType.getName()));
+    }
+
+    /**
+     * @return the included reports with the given input type Java class name, sorted by report Java class name
+     */
+    public List<RosettaReport> getReports(String inputType) {
+        return reportsByInputType.get(inputType);
+    }
+}
@@ -0,0 +1,97 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.regnosys.rosetta.common.transform.PipelineModel;
+import com.regnosys.rosetta.common.transform.TestPackModel.SampleModel;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A projection that is run as each sample of its upstream report completes, when generating with pipelining on.
+ * Collects the projection samples of every upstream test pack until all report samples are done.
+ */
+public class TestPackProjectionStage {
+    private final PipelineModel pipeline;
+    private final TestPackFunctionRunner functionRunner;
+    private final String formattedFunctionName;
+    private final SampleFingerprint fingerprint;
+    private final Function<String, TestPackManifest> manifestLoader;
+
+    private final ConcurrentMap<String, TestPackManifest> manifests = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Queue<SampleModel>> samples = new ConcurrentHashMap<>();
+    private final Queue<CompletableFuture<Void>> pending = new ConcurrentLinkedQueue<>();
+
+    TestPackProjectionStage(PipelineModel pipeline,
+                            TestPackFunctionRunner functionRunner,
+                            String formattedFunctionName,
+                            SampleFingerprint fingerprint,
+                            Function<String, TestPackManifest> manifestLoader) {
+        this.pipeline = pipeline;
+        this.functionRunner = functionRunner;
+        this.formattedFunctionName = formattedFunctionName;
+        this.fingerprint = fingerprint;
+        this.manifestLoader = manifestLoader;
+    }
+
+    public PipelineModel getPipeline() {
+        return pipeline;
+    }
+
+    TestPackFunctionRunner getFunctionRunner() {
+        return functionRunner;
+    }
+
+    public String getFormattedFunctionName() {
+        return formattedFunctionName;
+    }
+
+    public SampleFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    public TestPackManifest getManifest(String testPackName) {
+        return manifests.computeIfAbsent(testPackName, manifestLoader);
+    }
+
+    void submit(CompletableFuture<SampleModel> sample, String testPackName) {
+        Queue<SampleModel> testPackSamples = samples.computeIfAbsent(testPackName, n -> new ConcurrentLinkedQueue<>());
+        pending.add(sample.thenAccept(testPackSamples::add));
+    }
+
+    /**
+     * Waits for all submitted samples, then returns the samples of the test pack sorted by id.
+     */
+    public List<SampleModel> getSamples(String testPackName) {
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+        return samples.getOrDefault(testPackName, new ConcurrentLinkedQueue<>()).stream()
+                .sorted(Comparator.comparing(SampleModel::getId))
+                .collect(Collectors.toList());
+    }
+}
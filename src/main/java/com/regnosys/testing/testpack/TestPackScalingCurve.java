@@ -0,0 +1,133 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Evaluate time and allocated bytes of a function against the size of its input. The slope of each curve on a
+ * log-log scale approximates the exponent of the function's complexity, e.g. 1 for linear and 2 for quadratic.
+ */
+public class TestPackScalingCurve {
+
+    public static class Point {
+        private final int factor;
+        private final long inputBytes;
+        private final long evaluateNanos;
+        private final long evaluateAllocatedBytes;
+
+        Point(int factor, long inputBytes, long evaluateNanos, long evaluateAllocatedBytes) {
+            this.factor = factor;
+            this.inputBytes = inputBytes;
+            this.evaluateNanos = evaluateNanos;
+            this.evaluateAllocatedBytes = evaluateAllocatedBytes;
+        }
+
+        public int getFactor() {
+            return factor;
+        }
+
+        public long getInputBytes() {
+            return inputBytes;
+        }
+
+        public long getEvaluateNanos() {
+            return evaluateNanos;
+        }
+
+        /**
+         * Bytes allocated by the evaluate stage, or -1 if the JVM does not support measuring it.
+         */
+        public long getEvaluateAllocatedBytes() {
+            return evaluateAllocatedBytes;
+        }
+    }
+
+    private final String pipelineId;
+    private final ImmutableList<Point> points;
+
+    TestPackScalingCurve(String pipelineId, List<Point> points) {
+        this.pipelineId = pipelineId;
+        this.points = ImmutableList.copyOf(points);
+    }
+
+    public String getPipelineId() {
+        return pipelineId;
+    }
+
+    public List<Point> getPoints() {
+        return points;
+    }
+
+    public double getEvaluateSlope() {
+        return logLogSlope(points, Point::getEvaluateNanos);
+    }
+
+    public double getAllocationSlope() {
+        return logLogSlope(points, Point::getEvaluateAllocatedBytes);
+    }
+
+    public void writeCsv(Path csvPath) throws IOException {
+        String csv = points.stream()
+                .map(p -> String.join(",",
+                        String.valueOf(p.getFactor()),
+                        String.valueOf(p.getInputBytes()),
+                        String.valueOf(p.getEvaluateNanos()),
+                        String.valueOf(p.getEvaluateAllocatedBytes())))
+                .collect(Collectors.joining("\n", "factor,inputBytes,evaluateNanos,evaluateAllocatedBytes\n", "\n"));
+        Files.createDirectories(csvPath.toAbsolutePath().getParent());
+        Files.writeString(csvPath, csv);
+    }
+
+    /**
+     * Least squares slope of log(value) against log(input bytes), ignoring unmeasured points, or NaN if fewer than
+     * two points were measured.
+     */
+    static double logLogSlope(List<Point> points, ToLongFunction<Point> value) {
+        int n = 0;
+        double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+        for (Point point : points) {
+            long y = value.applyAsLong(point);
+            if (y <= 0 || point.getInputBytes() <= 0) {
+                continue;
+            }
+            double logX = Math.log(point.getInputBytes());
+            double logY = Math.log(y);
+            n++;
+            sumX += logX;
+            sumY += logY;
+            sumXX += logX * logX;
+            sumXY += logX * logY;
+        }
+        double denominator = n * sumXX - sumX * sumX;
+        if (n < 2 || denominator == 0) {
+            return Double.NaN;
+        }
+        return (n * sumXY - sumX * sumY) / denominator;
+    }
+}
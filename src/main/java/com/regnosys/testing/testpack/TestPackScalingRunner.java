@@ -0,0 +1,127 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.inject.Injector;
+import com.regnosys.rosetta.common.transform.PipelineModel;
+import com.rosetta.model.lib.RosettaModelObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.regnosys.testing.testpack.SampleTimings.Stage;
+import static com.regnosys.testing.testpack.TestPackFunctionRunnerProviderImpl.JSON_OBJECT_MAPPER;
+
+/**
+ * Runs a pipeline function on synthetic inputs of increasing size, and warns if the evaluate time or allocated bytes
+ * grow faster than the input, e.g. to catch quadratic behaviour that the hand-curated test pack samples are too small
+ * to show.
+ */
+public class TestPackScalingRunner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestPackScalingRunner.class);
+
+    public static final List<Integer> DEFAULT_FACTORS = List.of(1, 2, 4, 8, 16, 32, 64);
+    public static final double DEFAULT_MAX_SLOPE = 1.5;
+    private static final int REPEATS = 3;
+
+    @Inject
+    TestPackFunctionRunnerProvider runnerProvider;
+
+    public TestPackScalingCurve run(PipelineModel pipelineModel, SyntheticInputGenerator generator, Injector injector) {
+        return run(pipelineModel, generator, DEFAULT_FACTORS, DEFAULT_MAX_SLOPE, injector);
+    }
+
+    /**
+     * @param factors - number of copies of each replicated field, in increasing order
+     * @param maxSlope - log-log slope of the curves above which a warning is logged
+     */
+    public TestPackScalingCurve run(PipelineModel pipelineModel, SyntheticInputGenerator generator, List<Integer> factors, double maxSlope, Injector injector) {
+        PipelineModel.Transform transform = pipelineModel.getTransform();
+        Class<? extends RosettaModelObject> inputType = getInputType(transform);
+        TestPackFunctionRunner runner = runnerProvider.create(transform, injector);
+
+        // warm up on the seed input, so the first point does not include class loading and compilation
+        runner.run(toInput(generator.generate(1), inputType));
+
+        List<TestPackScalingCurve.Point> points = new ArrayList<>();
+        for (int factor : factors) {
+            JsonNode inputNode = generator.generate(factor);
+            long inputBytes = toBytes(inputNode).length;
+            long evaluateNanos = Long.MAX_VALUE;
+            long evaluateAllocatedBytes = Long.MAX_VALUE;
+            for (int i = 0; i < REPEATS; i++) {
+                TestPackFunctionResult result = runner.run(toInput(inputNode, inputType));
+                if (result.getOutput() == null) {
+                    LOGGER.error("Function {} failed on synthetic input of factor {}, so scaling was not measured further", transform.getFunction(), factor);
+                    return logCurve(new TestPackScalingCurve(pipelineModel.getId(), points), maxSlope);
+                }
+                // minimum of the repeats, as noise such as GC pauses only ever adds time
+                evaluateNanos = Math.min(evaluateNanos, result.getTimings().getNanos(Stage.EVALUATE));
+                evaluateAllocatedBytes = Math.min(evaluateAllocatedBytes, result.getTimings().getAllocatedBytes(Stage.EVALUATE));
+            }
+            points.add(new TestPackScalingCurve.Point(factor, inputBytes, evaluateNanos, evaluateAllocatedBytes));
+            LOGGER.info("Function {} factor {}: input {} bytes, evaluate {}ms, allocated {} bytes",
+                    transform.getFunction(), factor, inputBytes, evaluateNanos / 1_000_000, evaluateAllocatedBytes);
+        }
+        return logCurve(new TestPackScalingCurve(pipelineModel.getId(), points), maxSlope);
+    }
+
+    private TestPackScalingCurve logCurve(TestPackScalingCurve curve, double maxSlope) {
+        double evaluateSlope = curve.getEvaluateSlope();
+        double allocationSlope = curve.getAllocationSlope();
+        if (evaluateSlope > maxSlope || allocationSlope > maxSlope) {
+            LOGGER.warn("Pipeline {} scales super-linearly with input size, evaluate time slope {}, allocation slope {}, maximum {}",
+                    curve.getPipelineId(), String.format("%.2f", evaluateSlope), String.format("%.2f", allocationSlope), maxSlope);
+        } else {
+            LOGGER.info("Pipeline {} evaluate time slope {}, allocation slope {}",
+                    curve.getPipelineId(), String.format("%.2f", evaluateSlope), String.format("%.2f", allocationSlope));
+        }
+        return curve;
+    }
+
+    private static Class<? extends RosettaModelObject> getInputType(PipelineModel.Transform transform) {
+        try {
+            return Class.forName(transform.getInputType()).asSubclass(RosettaModelObject.class);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static RosettaModelObject toInput(JsonNode inputNode, Class<? extends RosettaModelObject> inputType) {
+        try {
+            return JSON_OBJECT_MAPPER.treeToValue(inputNode, inputType);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to create synthetic input of type " + inputType.getName(), e);
+        }
+    }
+
+    private static byte[] toBytes(JsonNode inputNode) {
+        try {
+            return JSON_OBJECT_MAPPER.writeValueAsBytes(inputNode);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.regnosys.testing.reports.ObjectMapperGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.regnosys.testing.testpack.SampleTimings.Stage;
+
+/**
+ * Per-stage timings of the samples of each pipeline, aggregated over a generation run and exported as JSON and CSV.
+ * <p>
+ * Each stage is aggregated over the samples that ran it, so samples whose input was taken from the input cache, or
+ * was passed in directly by a pipelined projection, are not counted in the read, parse or resolve means. Samples
+ * reused from the manifest are not run, so are not counted at all.
+ */
+public class TestPackTimingReport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestPackTimingReport.class);
+
+    public static final String JSON_FILE_NAME = "generation-timings.json";
+    public static final String CSV_FILE_NAME = "generation-timings.csv";
+
+    private final Map<String, PipelineTimings> pipelineTimings = new ConcurrentHashMap<>();
+
+    public void add(String pipelineId, SampleTimings sampleTimings) {
+        if (sampleTimings == null) {
+            return;
+        }
+        pipelineTimings.computeIfAbsent(pipelineId, id -> new PipelineTimings()).add(sampleTimings);
+    }
+
+    public void write(Path directory) {
+        Map<String, Map<String, Object>> report = new TreeMap<>();
+        pipelineTimings.forEach((pipelineId, timings) -> report.put(pipelineId, timings.toMap()));
+
+        StringBuilder csv = new StringBuilder("pipelineId,stage,samples,timedSamples,totalMillis,maxMillis,meanMillis,allocatedBytes\n");
+        new TreeMap<>(pipelineTimings).forEach((pipelineId, timings) -> timings.appendCsv(pipelineId, csv));
+
+        try {
+            Files.createDirectories(directory);
+            ObjectMapper mapper = ObjectMapperGenerator.createWriterMapper();
+            Files.writeString(directory.resolve(JSON_FILE_NAME), mapper.writerWithDefaultPrettyPrinter().writeValueAsString(report), StandardCharsets.UTF_8);
+            Files.writeString(directory.resolve(CSV_FILE_NAME), csv, StandardCharsets.UTF_8);
+            LOGGER.info("Wrote timing report to {}", directory.resolve(JSON_FILE_NAME));
+        } catch (IOException e) {
+            LOGGER.error("Failed to write timing report to {}", directory, e);
+        }
+    }
+
+    private static class PipelineTimings {
+        private int samples;
+        private final int[] timedSamples = new int[Stage.values().length];
+        private final long[] totalNanos = new long[Stage.values().length];
+        private final long[] maxNanos = new long[Stage.values().length];
+        private final long[] allocatedBytes = new long[Stage.values().length];
+
+        synchronized void add(SampleTimings sampleTimings) {
+            samples++;
+            for (Stage stage : Stage.values()) {
+                if (!sampleTimings.isTimed(stage)) {
+                    continue;
+                }
+                timedSamples[stage.ordinal()]++;
+                long nanos = sampleTimings.getNanos(stage);
+                totalNanos[stage.ordinal()] += nanos;
+                maxNanos[stage.ordinal()] = Math.max(maxNanos[stage.ordinal()], nanos);
+                allocatedBytes[stage.ordinal()] += Math.max(sampleTimings.getAllocatedBytes(stage), 0);
+            }
+        }
+
+        synchronized Map<String, Object> toMap() {
+            Map<String, Object> stages = new LinkedHashMap<>();
+            for (Stage stage : Stage.values()) {
+                Map<String, Object> stageTimings = new LinkedHashMap<>();
+                stageTimings.put("timedSamples", timedSamples[stage.ordinal()]);
+                stageTimings.put("totalMillis", toMillis(totalNanos[stage.ordinal()]));
+                stageTimings.put("maxMillis", toMillis(maxNanos[stage.ordinal()]));
+                stageTimings.put("meanMillis", getMeanMillis(stage));
+                stageTimings.put("allocatedBytes", allocatedBytes[stage.ordinal()]);
+                stages.put(stage.name(), stageTimings);
+            }
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("samples", samples);
+            map.put("stages", stages);
+            return map;
+        }
+
+        synchronized void appendCsv(String pipelineId, StringBuilder csv) {
+            for (Stage stage : Stage.values()) {
+                csv.append(pipelineId).append(',')
+                        .append(stage).append(',')
+                        .append(samples).append(',')
+                        .append(timedSamples[stage.ordinal()]).append(',')
+                        .append(toMillis(totalNanos[stage.ordinal()])).append(',')
+                        .append(toMillis(maxNanos[stage.ordinal()])).append(',')
+                        .append(Objects.toString(getMeanMillis(stage), "")).append(',')
+                        .append(allocatedBytes[stage.ordinal()]).append('\n');
+            }
+        }
+
+        /**
+         * Mean over the samples that ran the stage, or null if none did.
+         */
+        private Double getMeanMillis(Stage stage) {
+            int count = timedSamples[stage.ordinal()];
+            return count == 0 ? null : (double) totalNanos[stage.ordinal()] / count / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        private static long toMillis(long nanos) {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+    }
+}
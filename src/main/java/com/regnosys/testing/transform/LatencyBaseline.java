@@ -0,0 +1,220 @@
+package com.regnosys.testing.transform;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import com.regnosys.testing.ExpectationWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import static com.regnosys.testing.TestingExpectationUtil.*;
+
+/**
+ * Evaluate latency baseline of the samples of a transform function, stored next to its test pack configs as
+ * {@code <FunctionSimpleName>-latency-baseline.json}, mapping "testPackId/sampleId" to the median latency divided by
+ * the latency of a fixed calibration workload run in the same JVM, so baselines recorded on one machine can be checked
+ * on another, faster or slower, machine.
+ * <p>
+ * Writing expectations only adds the baseline of new samples. The baseline of existing samples is only replaced when
+ * {@link #UPDATE_LATENCY_BASELINE} is set, so a regression is never recorded as the new baseline by accident.
+ */
+public class LatencyBaseline {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LatencyBaseline.class);
+
+    public static boolean UPDATE_LATENCY_BASELINE = Optional.ofNullable(System.getenv("UPDATE_LATENCY_BASELINE"))
+            .map(Boolean::parseBoolean).orElse(false);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<TreeMap<String, Double>> BASELINE_TYPE = new TypeReference<>() {
+    };
+
+    /**
+     * Loads the baseline from the classpath, or an empty baseline if there is none yet.
+     */
+    public static LatencyBaseline load(Path configPath, Class<?> funcType) {
+        Path baselinePath = configPath.resolve(funcType.getSimpleName() + "-latency-baseline.json");
+        Map<String, Double> baseline = Optional.ofNullable(readStringFromResources(baselinePath))
+                .map(LatencyBaseline::parse)
+                .orElseGet(TreeMap::new);
+        return new LatencyBaseline(baselinePath, baseline, Calibration.NANOS, System::nanoTime);
+    }
+
+    private static Map<String, Double> parse(String json) {
+        try {
+            return MAPPER.readValue(json, BASELINE_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to parse latency baseline", e);
+        }
+    }
+
+    private final Path baselinePath;
+    private final Map<String, Double> baseline;
+    private final long calibrationNanos;
+    private final LongSupplier clock;
+    private final Map<String, Long> measured = new ConcurrentHashMap<>();
+
+    @VisibleForTesting
+    LatencyBaseline(Path baselinePath, Map<String, Double> baseline, long calibrationNanos, LongSupplier clock) {
+        this.baselinePath = baselinePath;
+        this.baseline = baseline;
+        this.calibrationNanos = calibrationNanos;
+        this.clock = clock;
+    }
+
+    /**
+     * Wraps the function so each call runs it the gate's warm-up and repeat number of times, on the same input, and
+     * records the median latency of the repeats for {@link #check}. Returns the output of the last run.
+     */
+    public <IN, OUT> Function<IN, OUT> measuring(String testPackId, String sampleId, LatencyGate gate, Function<IN, OUT> function) {
+        return input -> {
+            for (int i = 0; i < gate.getWarmups(); i++) {
+                function.apply(input);
+            }
+            long[] nanos = new long[gate.getRepeats()];
+            OUT output = null;
+            for (int i = 0; i < nanos.length; i++) {
+                long start = clock.getAsLong();
+                output = function.apply(input);
+                nanos[i] = clock.getAsLong() - start;
+            }
+            Arrays.sort(nanos);
+            measured.put(toKey(testPackId, sampleId), nanos[nanos.length / 2]);
+            return output;
+        };
+    }
+
+    /**
+     * Compares the measured latency of the sample to its baseline, both relative to the calibration latency.
+     *
+     * @return a description of the regression, if the sample has regressed beyond the gate's max ratio
+     */
+    public Optional<String> check(String testPackId, String sampleId, LatencyGate gate) {
+        String key = toKey(testPackId, sampleId);
+        Long medianNanos = measured.get(key);
+        Double baselineLatency = baseline.get(key);
+        if (medianNanos == null || baselineLatency == null || baselineLatency <= 0 || TimeUnit.NANOSECONDS.toMillis(medianNanos) < gate.getMinimumMillis()) {
+            return Optional.empty();
+        }
+        double latency = normalise(medianNanos);
+        double ratio = latency / baselineLatency;
+        if (ratio <= gate.getMaxRatio()) {
+            return Optional.empty();
+        }
+        return Optional.of(String.format("Sample %s evaluate latency %.1fms (%.2f x calibration) is %.1fx its baseline (%.2f x calibration, max %.1fx)",
+                key, medianNanos / 1e6, latency, ratio, baselineLatency, gate.getMaxRatio()));
+    }
+
+    /**
+     * Writes the baseline of new samples, and of all measured samples if {@link #UPDATE_LATENCY_BASELINE} is set,
+     * keeping the baseline of samples that were not run, e.g. in other shards.
+     */
+    public void write() throws JsonProcessingException {
+        if (!WRITE_EXPECTATIONS || measured.isEmpty()) {
+            return;
+        }
+        Map<String, Double> updated = getUpdatedBaseline(UPDATE_LATENCY_BASELINE);
+        if (updated.equals(baseline)) {
+            return;
+        }
+        String content = MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(updated);
+        TEST_WRITE_BASE_PATH
+                .filter(Files::exists)
+                .map(writeBasePath -> writeBasePath.resolve(baselinePath))
+                .ifPresent(writePath -> LOGGER.info("Latency baseline {} {}", writePath, ExpectationWriter.write(writePath, content, true)));
+    }
+
+    @VisibleForTesting
+    Map<String, Double> getUpdatedBaseline(boolean updateExisting) {
+        Map<String, Double> updated = new TreeMap<>(baseline);
+        measured.forEach((key, nanos) -> {
+            if (updateExisting || !baseline.containsKey(key)) {
+                updated.put(key, normalise(nanos));
+            }
+        });
+        return updated;
+    }
+
+    private double normalise(long nanos) {
+        return (double) nanos / calibrationNanos;
+    }
+
+    private static String toKey(String testPackId, String sampleId) {
+        return testPackId + "/" + sampleId;
+    }
+
+    /**
+     * Median latency of a fixed workload of allocation, hashing and sorting, measured once per JVM.
+     */
+    private static final class Calibration {
+        private static final int WARMUPS = 5;
+        private static final int REPEATS = 11;
+        private static final long NANOS = calibrate();
+
+        @SuppressWarnings("unused")
+        private static volatile int sink;
+
+        private static long calibrate() {
+            for (int i = 0; i < WARMUPS; i++) {
+                runWorkload();
+            }
+            long[] nanos = new long[REPEATS];
+            for (int i = 0; i < nanos.length; i++) {
+                long start = System.nanoTime();
+                runWorkload();
+                nanos[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(nanos);
+            long median = Math.max(1, nanos[nanos.length / 2]);
+            LOGGER.info("Latency calibration {}ms", String.format("%.2f", median / 1e6));
+            return median;
+        }
+
+        private static void runWorkload() {
+            List<String> values = new ArrayList<>();
+            Map<String, Integer> counts = new HashMap<>();
+            for (int i = 0; i < 20_000; i++) {
+                String value = Integer.toHexString(i * 0x9E3779B1);
+                values.add(value);
+                counts.merge(value.substring(0, 2), 1, Integer::sum);
+            }
+            Collections.sort(values);
+            sink = values.get(values.size() / 2).hashCode() + counts.size();
+        }
+    }
+}
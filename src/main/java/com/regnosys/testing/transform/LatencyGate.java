@@ -0,0 +1,98 @@
+package com.regnosys.testing.transform;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+/**
+ * Settings for measuring the evaluate latency of each transform sample and comparing it to the recorded baseline.
+ * <p>
+ * The latency of a sample is the median of the repeated runs, after the warm-up runs, relative to the latency of a
+ * calibration workload on the same machine. A sample regresses if its latency exceeds the baseline by more than the
+ * maximum ratio, ignoring samples faster than the minimum latency, whose timings are mostly noise.
+ */
+public class LatencyGate {
+
+    public static LatencyGate create() {
+        return new LatencyGate(5, 10, 2.0, 5, true);
+    }
+
+    public LatencyGate withWarmups(int warmups) {
+        return new LatencyGate(warmups, this.repeats, this.maxRatio, this.minimumMillis, this.failOnRegression);
+    }
+
+    public LatencyGate withRepeats(int repeats) {
+        return new LatencyGate(this.warmups, repeats, this.maxRatio, this.minimumMillis, this.failOnRegression);
+    }
+
+    /**
+     * e.g. 2.0 allows a sample to take up to twice its baseline latency.
+     */
+    public LatencyGate withMaxRatio(double maxRatio) {
+        return new LatencyGate(this.warmups, this.repeats, maxRatio, this.minimumMillis, this.failOnRegression);
+    }
+
+    public LatencyGate withMinimumMillis(long minimumMillis) {
+        return new LatencyGate(this.warmups, this.repeats, this.maxRatio, minimumMillis, this.failOnRegression);
+    }
+
+    /**
+     * Fail the sample test on regression (the default), otherwise log a warning.
+     */
+    public LatencyGate withFailOnRegression(boolean failOnRegression) {
+        return new LatencyGate(this.warmups, this.repeats, this.maxRatio, this.minimumMillis, failOnRegression);
+    }
+
+    private final int warmups;
+    private final int repeats;
+    private final double maxRatio;
+    private final long minimumMillis;
+    private final boolean failOnRegression;
+
+    private LatencyGate(int warmups, int repeats, double maxRatio, long minimumMillis, boolean failOnRegression) {
+        if (warmups < 0 || repeats < 1 || maxRatio <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid latency gate, warmups %d, repeats %d, max ratio %s", warmups, repeats, maxRatio));
+        }
+        this.warmups = warmups;
+        this.repeats = repeats;
+        this.maxRatio = maxRatio;
+        this.minimumMillis = minimumMillis;
+        this.failOnRegression = failOnRegression;
+    }
+
+    public int getWarmups() {
+        return warmups;
+    }
+
+    public int getRepeats() {
+        return repeats;
+    }
+
+    public double getMaxRatio() {
+        return maxRatio;
+    }
+
+    public long getMinimumMillis() {
+        return minimumMillis;
+    }
+
+    public boolean isFailOnRegression() {
+        return failOnRegression;
+    }
+}
@@ -0,0 +1,291 @@
+package com.regnosys.testing.transform;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compares expected and actual output cheaply when they are equal, checking length before content, and
+ * otherwise produces a bounded path-level diff of the first differing JSON or XML nodes, rather than a full string
+ * diff of the output.
+ */
+public class OutputComparator {
+
+    public static final int DEFAULT_MAX_DIFFERENCES = 20;
+    private static final int MAX_VALUE_LENGTH = 80;
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private final int maxDifferences;
+
+    public OutputComparator() {
+        this(DEFAULT_MAX_DIFFERENCES);
+    }
+
+    public OutputComparator(int maxDifferences) {
+        this.maxDifferences = maxDifferences;
+    }
+
+    public static boolean isEqual(String expected, String actual) {
+        if (expected == null || actual == null) {
+            return expected == null && actual == null;
+        }
+        return expected.length() == actual.length() && expected.equals(actual);
+    }
+
+    /**
+     * @return the first differences between the expected and actual output, or an empty list if they are equal
+     */
+    public List<String> diff(String expected, String actual) {
+        if (isEqual(expected, actual)) {
+            return List.of();
+        }
+        if (expected == null || actual == null) {
+            return List.of(expected == null ? "expected output not found" : "actual output is null");
+        }
+        List<String> differences = new ArrayList<>();
+        String expectedStart = expected.stripLeading();
+        String actualStart = actual.stripLeading();
+        try {
+            if (expectedStart.startsWith("{") || expectedStart.startsWith("[")) {
+                diffJson("$", JSON_MAPPER.readTree(expected), JSON_MAPPER.readTree(actual), differences);
+            } else if (expectedStart.startsWith("<") && actualStart.startsWith("<")) {
+                diffXml("", parseXml(expected).getDocumentElement(), parseXml(actual).getDocumentElement(), differences);
+            }
+        } catch (Exception e) {
+            differences.clear();
+        }
+        if (differences.isEmpty()) {
+            // structurally equal, e.g. differs only in whitespace or ordering, or could not be parsed
+            diffLines(expected, actual, differences);
+        }
+        return differences;
+    }
+
+    /**
+     * @return a bounded description of the differences, or null if the expected and actual output are equal
+     */
+    public String describe(String expected, String actual) {
+        List<String> differences = diff(expected, actual);
+        if (differences.isEmpty()) {
+            return null;
+        }
+        StringBuilder description = new StringBuilder("Actual output differs from expected");
+        differences.forEach(d -> description.append(System.lineSeparator()).append("  ").append(d));
+        if (differences.size() >= maxDifferences) {
+            description.append(System.lineSeparator()).append("  ... (first ").append(maxDifferences).append(" differences shown)");
+        }
+        return description.toString();
+    }
+
+    private void diffJson(String path, JsonNode expected, JsonNode actual, List<String> differences) {
+        if (differences.size() >= maxDifferences || expected.equals(actual)) {
+            return;
+        }
+        if (expected.isObject() && actual.isObject()) {
+            Set<String> fieldNames = new TreeSet<>();
+            expected.fieldNames().forEachRemaining(fieldNames::add);
+            actual.fieldNames().forEachRemaining(fieldNames::add);
+            for (String fieldName : fieldNames) {
+                String fieldPath = path + "." + fieldName;
+                if (!expected.has(fieldName)) {
+                    addDifference(differences, fieldPath, "unexpected " + truncate(actual.get(fieldName).toString()));
+                } else if (!actual.has(fieldName)) {
+                    addDifference(differences, fieldPath, "missing, expected " + truncate(expected.get(fieldName).toString()));
+                } else {
+                    diffJson(fieldPath, expected.get(fieldName), actual.get(fieldName), differences);
+                }
+            }
+        } else if (expected.isArray() && actual.isArray()) {
+            int size = Math.max(expected.size(), actual.size());
+            for (int i = 0; i < size; i++) {
+                String elementPath = path + "[" + i + "]";
+                if (i >= expected.size()) {
+                    addDifference(differences, elementPath, "unexpected " + truncate(actual.get(i).toString()));
+                } else if (i >= actual.size()) {
+                    addDifference(differences, elementPath, "missing, expected " + truncate(expected.get(i).toString()));
+                } else {
+                    diffJson(elementPath, expected.get(i), actual.get(i), differences);
+                }
+            }
+        } else {
+            addDifference(differences, path, "expected " + truncate(expected.toString()) + " but was " + truncate(actual.toString()));
+        }
+    }
+
+    private void diffXml(String parentPath, Element expected, Element actual, List<String> differences) {
+        if (differences.size() >= maxDifferences) {
+            return;
+        }
+        String path = parentPath + "/" + expected.getNodeName();
+        if (!expected.getNodeName().equals(actual.getNodeName())) {
+            addDifference(differences, path, "expected element " + expected.getNodeName() + " but was " + actual.getNodeName());
+            return;
+        }
+        diffXmlAttributes(path, expected, actual, differences);
+
+        List<Element> expectedChildren = childElements(expected);
+        List<Element> actualChildren = childElements(actual);
+        if (expectedChildren.isEmpty() && actualChildren.isEmpty()) {
+            String expectedText = expected.getTextContent().trim();
+            String actualText = actual.getTextContent().trim();
+            if (!expectedText.equals(actualText)) {
+                addDifference(differences, path, "expected \"" + truncate(expectedText) + "\" but was \"" + truncate(actualText) + "\"");
+            }
+            return;
+        }
+        int size = Math.max(expectedChildren.size(), actualChildren.size());
+        for (int i = 0; i < size; i++) {
+            if (i >= expectedChildren.size()) {
+                addDifference(differences, path + "/" + actualChildren.get(i).getNodeName() + "[" + (i + 1) + "]", "unexpected element");
+            } else if (i >= actualChildren.size()) {
+                addDifference(differences, path + "/" + expectedChildren.get(i).getNodeName() + "[" + (i + 1) + "]", "missing element");
+            } else {
+                diffXml(path, expectedChildren.get(i), actualChildren.get(i), differences);
+            }
+        }
+    }
+
+    private void diffXmlAttributes(String path, Element expected, Element actual, List<String> differences) {
+        Set<String> names = new TreeSet<>();
+        names.addAll(attributes(expected).keySet());
+        names.addAll(attributes(actual).keySet());
+        for (String name : names) {
+            String expectedValue = expected.hasAttribute(name) ? expected.getAttribute(name) : null;
+            String actualValue = actual.hasAttribute(name) ? actual.getAttribute(name) : null;
+            if (expectedValue == null || !expectedValue.equals(actualValue)) {
+                addDifference(differences, path + "/@" + name, "expected " + expectedValue + " but was " + actualValue);
+            }
+        }
+    }
+
+    private void diffLines(String expected, String actual, List<String> differences) {
+        Iterator<String> expectedLines = expected.lines().iterator();
+        Iterator<String> actualLines = actual.lines().iterator();
+        int lineNumber = 1;
+        while ((expectedLines.hasNext() || actualLines.hasNext()) && differences.size() < maxDifferences) {
+            String expectedLine = expectedLines.hasNext() ? expectedLines.next() : null;
+            String actualLine = actualLines.hasNext() ? actualLines.next() : null;
+            if (expectedLine == null || !expectedLine.equals(actualLine)) {
+                addDifference(differences, "line " + lineNumber, "expected " + quote(expectedLine) + " but was " + quote(actualLine));
+            }
+            lineNumber++;
+        }
+        if (differences.isEmpty()) {
+            diffLineEndings(expected, actual, differences);
+        }
+    }
+
+    /**
+     * The lines are equal, so the outputs differ in their line terminators or in a trailing line terminator.
+     */
+    private void diffLineEndings(String expected, String actual, List<String> differences) {
+        List<String> expectedEndings = lineEndings(expected);
+        List<String> actualEndings = lineEndings(actual);
+        int size = Math.min(expectedEndings.size(), actualEndings.size());
+        for (int i = 0; i < size && differences.size() < maxDifferences; i++) {
+            if (!expectedEndings.get(i).equals(actualEndings.get(i))) {
+                addDifference(differences, "line " + (i + 1), "expected line ending " + escape(expectedEndings.get(i)) + " but was " + escape(actualEndings.get(i)));
+            }
+        }
+        if (expectedEndings.size() > actualEndings.size()) {
+            addDifference(differences, "end of output", "missing trailing " + escape(expectedEndings.get(size)));
+        } else if (actualEndings.size() > expectedEndings.size()) {
+            addDifference(differences, "end of output", "unexpected trailing " + escape(actualEndings.get(size)));
+        }
+    }
+
+    private static List<String> lineEndings(String value) {
+        List<String> endings = new ArrayList<>();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\r' && i + 1 < value.length() && value.charAt(i + 1) == '\n') {
+                endings.add("\r\n");
+                i++;
+            } else if (c == '\r' || c == '\n') {
+                endings.add(String.valueOf(c));
+            }
+        }
+        return endings;
+    }
+
+    private static String escape(String lineEnding) {
+        return lineEnding.replace("\r", "\\r").replace("\n", "\\n");
+    }
+
+    private void addDifference(List<String> differences, String path, String description) {
+        if (differences.size() < maxDifferences) {
+            differences.add(path + ": " + description);
+        }
+    }
+
+    private static Document parseXml(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    }
+
+    private static List<Element> childElements(Element element) {
+        List<Element> children = new ArrayList<>();
+        NodeList childNodes = element.getChildNodes();
+        for (int i = 0; i < childNodes.getLength(); i++) {
+            if (childNodes.item(i).getNodeType() == Node.ELEMENT_NODE) {
+                children.add((Element) childNodes.item(i));
+            }
+        }
+        return children;
+    }
+
+    private static Map<String, String> attributes(Element element) {
+        Map<String, String> attributes = new HashMap<>();
+        NamedNodeMap nodeMap = element.getAttributes();
+        for (int i = 0; i < nodeMap.getLength(); i++) {
+            Attr attr = (Attr) nodeMap.item(i);
+            attributes.put(attr.getName(), attr.getValue());
+        }
+        return attributes;
+    }
+
+    private static String quote(String value) {
+        return value == null ? "<end of output>" : "\"" + truncate(value) + "\"";
+    }
+
+    private static String truncate(String value) {
+        return value.length() <= MAX_VALUE_LENGTH ? value : value.substring(0, MAX_VALUE_LENGTH) + "...";
+    }
+}
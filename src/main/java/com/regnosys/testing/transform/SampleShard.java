@@ -0,0 +1,91 @@
+package com.regnosys.testing.transform;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Deterministic slice of the samples, so several CI agents can each run a disjoint, stable part of the transform
+ * tests. A sample belongs to the shard selected by a hash of its test pack id and sample id.
+ * <p>
+ * Set system properties transform.test.shard.index (from 0) and transform.test.shard.count, e.g.
+ * -Dtransform.test.shard.index=2 -Dtransform.test.shard.count=4.
+ */
+public class SampleShard {
+
+    public static final String SHARD_INDEX_PROPERTY = "transform.test.shard.index";
+    public static final String SHARD_COUNT_PROPERTY = "transform.test.shard.count";
+
+    public static SampleShard fromSystemProperties() {
+        int index = Optional.ofNullable(System.getProperty(SHARD_INDEX_PROPERTY)).map(Integer::parseInt).orElse(0);
+        int count = Optional.ofNullable(System.getProperty(SHARD_COUNT_PROPERTY)).map(Integer::parseInt).orElse(1);
+        return new SampleShard(index, count);
+    }
+
+    public static SampleShard all() {
+        return new SampleShard(0, 1);
+    }
+
+    private final int index;
+    private final int count;
+
+    public SampleShard(int index, int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException(String.format("Invalid shard index %d of count %d", index, count));
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    public boolean isSharded() {
+        return count > 1;
+    }
+
+    public boolean includes(String testPackId, String sampleId) {
+        if (!isSharded()) {
+            return true;
+        }
+        long hash = Hashing.farmHashFingerprint64()
+                .newHasher()
+                .putString(testPackId, StandardCharsets.UTF_8)
+                .putChar('/')
+                .putString(sampleId, StandardCharsets.UTF_8)
+                .hash()
+                .asLong();
+        return Math.floorMod(hash, count) == index;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("shard %d of %d", index, count);
+    }
+}
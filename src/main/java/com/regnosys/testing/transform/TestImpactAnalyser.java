@@ -0,0 +1,195 @@
+package com.regnosys.testing.transform;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
+import com.regnosys.rosetta.rosetta.RosettaModel;
+import com.regnosys.rosetta.rosetta.RosettaReport;
+import com.regnosys.rosetta.rosetta.RosettaRootElement;
+import com.regnosys.rosetta.rosetta.simple.Function;
+import com.regnosys.testing.testpack.TestPackModelHelper;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the functions and reports that depend, directly or transitively, on the model elements of changed rosetta
+ * files, by walking the cross references between the model elements in the same way as the unused model element
+ * finder in the util package.
+ */
+public class TestImpactAnalyser {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestImpactAnalyser.class);
+
+    @Inject
+    TestPackModelHelper modelHelper;
+
+    /**
+     * @param changedRosettaFiles - paths of the changed rosetta files, e.g. relative to the repository root, matched to
+     *                            the resource paths of the loaded models, see {@link #getChangedModels}
+     * @return java class names of the affected functions and reports, or empty if a changed file is not one of the
+     * loaded models (e.g. it was deleted), in which case everything should be treated as affected
+     */
+    public Optional<Set<String>> getAffectedJavaClasses(List<RosettaModel> models, Collection<String> changedRosettaFiles) {
+        Map<RosettaModel, List<String>> pathSegmentsByModel = new LinkedHashMap<>();
+        for (RosettaModel model : models) {
+            pathSegmentsByModel.put(model, getPathSegments(model));
+        }
+        Optional<Set<RosettaModel>> changedModels = getChangedModels(pathSegmentsByModel, changedRosettaFiles);
+        if (changedModels.isEmpty()) {
+            return Optional.empty();
+        }
+
+        SetMultimap<RosettaRootElement, RosettaRootElement> dependents = HashMultimap.create();
+        Deque<RosettaRootElement> affected = new ArrayDeque<>();
+        for (RosettaModel model : models) {
+            boolean changed = changedModels.get().contains(model);
+            for (RosettaRootElement element : model.getElements()) {
+                addDependencies(element, element, dependents);
+                addDependencies(element, element.eAllContents(), dependents);
+                if (changed) {
+                    affected.add(element);
+                }
+            }
+        }
+
+        Set<RosettaRootElement> visited = new HashSet<>(affected);
+        while (!affected.isEmpty()) {
+            for (RosettaRootElement dependent : dependents.get(affected.pop())) {
+                if (visited.add(dependent)) {
+                    affected.add(dependent);
+                }
+            }
+        }
+
+        ImmutableSet.Builder<String> affectedJavaClasses = ImmutableSet.builder();
+        for (RosettaRootElement element : visited) {
+            if (element instanceof Function) {
+                affectedJavaClasses.add(modelHelper.toJavaClass((Function) element));
+            } else if (element instanceof RosettaReport) {
+                affectedJavaClasses.add(modelHelper.toJavaClass((RosettaReport) element));
+            }
+        }
+        Set<String> result = affectedJavaClasses.build();
+        LOGGER.info("{} model elements and {} functions and reports are affected by changes to {}", visited.size(), result.size(), changedRosettaFiles);
+        return Optional.of(result);
+    }
+
+    /**
+     * Matches each changed file to the models whose resource path shares the longest suffix of path segments with its
+     * normalised path, e.g. "rosetta-source/src/main/rosetta/base.rosetta" to "classpath:/rosetta/base.rosetta", as the
+     * source folder of a file and the classpath folder it is loaded from can differ. Every model tied for the longest
+     * suffix is treated as changed.
+     *
+     * @return the changed models, or empty if a changed file matches no model
+     */
+    static <T> Optional<Set<T>> getChangedModels(Map<T, List<String>> pathSegmentsByModel, Collection<String> changedFiles) {
+        Set<T> changedModels = new HashSet<>();
+        for (String changedFile : changedFiles) {
+            List<String> changedSegments = toPathSegments(changedFile);
+            Set<T> matches = new HashSet<>();
+            int longestSuffix = 0;
+            for (Map.Entry<T, List<String>> model : pathSegmentsByModel.entrySet()) {
+                int suffix = getCommonSuffixLength(changedSegments, model.getValue());
+                if (suffix == 0 || suffix < longestSuffix) {
+                    continue;
+                }
+                if (suffix > longestSuffix) {
+                    longestSuffix = suffix;
+                    matches.clear();
+                }
+                matches.add(model.getKey());
+            }
+            if (matches.isEmpty()) {
+                LOGGER.info("Changed rosetta file {} is not in the loaded model, so all functions are treated as affected", changedFile);
+                return Optional.empty();
+            }
+            changedModels.addAll(matches);
+        }
+        return Optional.of(changedModels);
+    }
+
+    static List<String> toPathSegments(String path) {
+        List<String> segments = new ArrayList<>();
+        for (Path name : Path.of(path.replace('\\', '/')).normalize()) {
+            segments.add(name.toString());
+        }
+        return segments;
+    }
+
+    private static int getCommonSuffixLength(List<String> a, List<String> b) {
+        int length = 0;
+        while (length < a.size() && length < b.size()
+                && a.get(a.size() - 1 - length).equals(b.get(b.size() - 1 - length))) {
+            length++;
+        }
+        return length;
+    }
+
+    private static void addDependencies(RosettaRootElement element, Iterator<EObject> contents, SetMultimap<RosettaRootElement, RosettaRootElement> dependents) {
+        while (contents.hasNext()) {
+            addDependencies(element, contents.next(), dependents);
+        }
+    }
+
+    private static void addDependencies(RosettaRootElement element, EObject content, SetMultimap<RosettaRootElement, RosettaRootElement> dependents) {
+        for (EObject reference : content.eCrossReferences()) {
+            RosettaRootElement referencedElement = getRootElement(reference);
+            if (referencedElement != null && referencedElement != element) {
+                dependents.put(referencedElement, element);
+            }
+        }
+    }
+
+    private static RosettaRootElement getRootElement(EObject eObject) {
+        EObject current = eObject;
+        while (current != null && !(current.eContainer() instanceof RosettaModel)) {
+            current = current.eContainer();
+        }
+        return current instanceof RosettaRootElement ? (RosettaRootElement) current : null;
+    }
+
+    private static List<String> getPathSegments(RosettaModel model) {
+        return Optional.ofNullable(model.eResource())
+                .map(r -> Arrays.stream(r.getURI().segments())
+                        .map(URI::decode)
+                        .collect(Collectors.toList()))
+                .orElse(List.of(model.getName()));
+    }
+}
@@ -0,0 +1,114 @@
+package com.regnosys.testing.transform;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Injector;
+import com.regnosys.rosetta.common.transform.PipelineModel;
+import com.regnosys.rosetta.rosetta.RosettaModel;
+import com.regnosys.testing.RosettaTestingInjectorProvider;
+import com.regnosys.testing.testpack.TestPackModelHelper;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Pipelines affected by the rosetta files changed by the current change set, as listed in system property
+ * {@link #CHANGED_FILES_PROPERTY}, e.g.
+ * <pre>
+ * -Dtransform.test.changed.files=$(git diff --name-only origin/main | paste -sd, -)
+ * </pre>
+ * A pipeline is affected if its function depends on a changed model element, or its upstream pipeline is affected.
+ * If the property is not set, or any changed file is not a rosetta file (e.g. a sample input, expected output, java
+ * code or config), every pipeline is affected. The analysis is done once per JVM, as loading the model is
+ * slow.
+ */
+public class TestImpactAnalysis {
+
+    public static final String CHANGED_FILES_PROPERTY = "transform.test.changed.files";
+
+    private static final Map<List<Object>, TestImpactAnalysis> ANALYSES = new ConcurrentHashMap<>();
+
+    public static TestImpactAnalysis all() {
+        return new TestImpactAnalysis(null);
+    }
+
+    /**
+     * @param rosettaPaths - classpath folders of the rosetta files to load, see {@link TestPackModelHelper#loadRosettaModels}
+     */
+    public static TestImpactAnalysis fromSystemProperties(ImmutableList<String> rosettaPaths) {
+        String changedFiles = System.getProperty(CHANGED_FILES_PROPERTY);
+        if (changedFiles == null) {
+            return all();
+        }
+        List<String> changedFileList = Splitter.on(',').trimResults().omitEmptyStrings().splitToList(changedFiles);
+        if (changedFileList.stream().anyMatch(f -> !f.endsWith(".rosetta"))) {
+            // the impact of other files on the pipelines is not analysed
+            return all();
+        }
+        List<String> changedRosettaFiles = changedFileList.stream()
+                .sorted()
+                .collect(Collectors.toList());
+        return ANALYSES.computeIfAbsent(List.of(rosettaPaths, changedRosettaFiles), k -> analyse(rosettaPaths, changedRosettaFiles));
+    }
+
+    private static TestImpactAnalysis analyse(ImmutableList<String> rosettaPaths, List<String> changedRosettaFiles) {
+        if (changedRosettaFiles.isEmpty()) {
+            return new TestImpactAnalysis(ImmutableSet.of());
+        }
+        Injector injector = new RosettaTestingInjectorProvider().getInjector();
+        TestPackModelHelper modelHelper = injector.getInstance(TestPackModelHelper.class);
+        List<RosettaModel> models = modelHelper.loadRosettaModels(rosettaPaths, TestImpactAnalysis.class.getClassLoader());
+        return new TestImpactAnalysis(injector.getInstance(TestImpactAnalyser.class)
+                .getAffectedJavaClasses(models, changedRosettaFiles)
+                .orElse(null));
+    }
+
+    // null if every pipeline is affected
+    private final Set<String> affectedJavaClasses;
+
+    TestImpactAnalysis(Set<String> affectedJavaClasses) {
+        this.affectedJavaClasses = affectedJavaClasses;
+    }
+
+    public boolean isAffected(PipelineModel pipelineModel, TransformConfigIndex index) {
+        return isAffected(pipelineModel, index, new HashSet<>());
+    }
+
+    private boolean isAffected(PipelineModel pipelineModel, TransformConfigIndex index, Set<String> visitedPipelineIds) {
+        if (affectedJavaClasses == null || affectedJavaClasses.contains(pipelineModel.getTransform().getFunction())) {
+            return true;
+        }
+        String upstreamPipelineId = pipelineModel.getUpstreamPipelineId();
+        if (upstreamPipelineId == null || !visitedPipelineIds.add(pipelineModel.getId())) {
+            return false;
+        }
+        return index.getPipelineModels().stream()
+                .filter(p -> upstreamPipelineId.equals(p.getId()))
+                .anyMatch(p -> isAffected(p, index, visitedPipelineIds));
+    }
+}
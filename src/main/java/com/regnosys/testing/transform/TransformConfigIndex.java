@@ -0,0 +1,114 @@
+package com.regnosys.testing.transform;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.regnosys.rosetta.common.serialisation.RosettaObjectMapper;
+import com.regnosys.rosetta.common.transform.PipelineModel;
+import com.regnosys.rosetta.common.transform.TestPackModel;
+import com.regnosys.rosetta.common.transform.TestPackUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide index of the pipeline and test pack configs under a config path, so the classpath is scanned and the
+ * config files parsed once per JVM rather than by every test class.
+ * <p>
+ * The index is built lazily on first use of each config path and class loader, and kept for as long as the class
+ * loader is reachable. Lookups by function name and pipeline id are memoised, and use the same matching as
+ * {@link TestPackUtils}.
+ */
+public class TransformConfigIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransformConfigIndex.class);
+
+    private static final ObjectMapper JSON_OBJECT_MAPPER = RosettaObjectMapper.getNewRosettaObjectMapper();
+    private static final Cache<ClassLoader, Map<Path, TransformConfigIndex>> INDEXES_BY_CLASS_LOADER = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    public static TransformConfigIndex get(Path configPath, ClassLoader classLoader) {
+        return INDEXES_BY_CLASS_LOADER.asMap()
+                .computeIfAbsent(classLoader, c -> new ConcurrentHashMap<>())
+                .computeIfAbsent(configPath, p -> load(p, classLoader));
+    }
+
+    private static TransformConfigIndex load(Path configPath, ClassLoader classLoader) {
+        long start = System.currentTimeMillis();
+        List<PipelineModel> pipelineModels = TestPackUtils.getPipelineModels(configPath, classLoader, JSON_OBJECT_MAPPER);
+        List<TestPackModel> testPackModels = TestPackUtils.getTestPackModels(configPath, classLoader, JSON_OBJECT_MAPPER);
+        LOGGER.info("Indexed {} pipelines and {} test packs under {} in {}ms",
+                pipelineModels.size(), testPackModels.size(), configPath, System.currentTimeMillis() - start);
+        return new TransformConfigIndex(pipelineModels, testPackModels);
+    }
+
+    private final ImmutableList<PipelineModel> pipelineModels;
+    private final ImmutableList<TestPackModel> testPackModels;
+    private final ImmutableMap<String, TestPackModel> testPackModelsById;
+    private final Map<String, PipelineModel> pipelineModelsByFunction = new ConcurrentHashMap<>();
+    private final Map<String, List<TestPackModel>> testPackModelsByPipelineId = new ConcurrentHashMap<>();
+
+    private TransformConfigIndex(List<PipelineModel> pipelineModels, List<TestPackModel> testPackModels) {
+        this.pipelineModels = ImmutableList.copyOf(pipelineModels);
+        this.testPackModels = ImmutableList.copyOf(testPackModels);
+        Map<String, TestPackModel> testPackModelsById = new LinkedHashMap<>();
+        testPackModels.stream()
+                .filter(testPackModel -> testPackModel.getId() != null)
+                .forEach(testPackModel -> testPackModelsById.putIfAbsent(testPackModel.getId(), testPackModel));
+        this.testPackModelsById = ImmutableMap.copyOf(testPackModelsById);
+    }
+
+    public List<PipelineModel> getPipelineModels() {
+        return pipelineModels;
+    }
+
+    public List<TestPackModel> getTestPackModels() {
+        return testPackModels;
+    }
+
+    /**
+     * @see TestPackUtils#getPipelineModel(List, String)
+     */
+    public PipelineModel getPipelineModel(String functionName) {
+        return pipelineModelsByFunction.computeIfAbsent(functionName, f -> TestPackUtils.getPipelineModel(pipelineModels, f));
+    }
+
+    /**
+     * @see TestPackUtils#getTestPackModels(List, String)
+     */
+    public List<TestPackModel> getTestPackModels(String pipelineId) {
+        return testPackModelsByPipelineId.computeIfAbsent(pipelineId, id -> ImmutableList.copyOf(TestPackUtils.getTestPackModels(testPackModels, id)));
+    }
+
+    public Optional<TestPackModel> getTestPackModel(String testPackId) {
+        return Optional.ofNullable(testPackModelsById.get(testPackId));
+    }
+}
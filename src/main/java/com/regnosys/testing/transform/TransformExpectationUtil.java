@@ -27,70 +27,99 @@ import com.google.common.collect.Multimap;
 import com.regnosys.rosetta.common.serialisation.RosettaObjectMapper;
 import com.regnosys.rosetta.common.transform.TestPackModel;
 import com.regnosys.rosetta.common.transform.TestPackModel.SampleModel;
+import com.regnosys.testing.ExpectationWriter;
 import com.regnosys.testing.TestingExpectationUtil;
 import com.regnosys.testing.reports.ObjectMapperGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.URL;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import static com.regnosys.rosetta.common.transform.TestPackUtils.findPaths;
-import static com.regnosys.rosetta.common.transform.TestPackUtils.readFile;
 
 public class TransformExpectationUtil {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TransformExpectationUtil.class);
 
+    private final static ObjectMapper CONFIG_READER = RosettaObjectMapper.getNewRosettaObjectMapper();
     private final static ObjectWriter CONFIG_WRITER =
             ObjectMapperGenerator.createWriterMapper().writerWithDefaultPrettyPrinter();
 
     public static void writeExpectations(Multimap<String, TransformTestResult> actualExpectation, Path testPackConfigPath) throws JsonProcessingException {
+        writeExpectations(actualExpectation, testPackConfigPath, SampleShard.fromSystemProperties());
+    }
+
+    /**
+     * @param shard - the samples that were run. Samples of other shards are kept in the test pack config.
+     */
+    public static void writeExpectations(Multimap<String, TransformTestResult> actualExpectation, Path testPackConfigPath, SampleShard shard) throws JsonProcessingException {
         if (!TestingExpectationUtil.WRITE_EXPECTATIONS) {
             LOGGER.info("WRITE_EXPECTATIONS is set to false, not updating expectations.");
             return;
         }
+        // Add environment variable TEST_WRITE_BASE_PATH to override the base write path, e.g.
+        // TEST_WRITE_BASE_PATH=/repo-location/src/main/resources/
+        Optional<Path> writeBasePath = TestingExpectationUtil.TEST_WRITE_BASE_PATH.filter(Files::exists);
+        if (writeBasePath.isEmpty()) {
+            return;
+        }
+        // files are written together at the end, concurrently and only if changed
+        Map<Path, String> files = new LinkedHashMap<>();
         for (var entry : actualExpectation.asMap().entrySet()) {
             String testPackId = entry.getKey();
             TestPackModel model = getTestPackModel(testPackId, TransformExpectationUtil.class.getClassLoader(), testPackConfigPath);
+            Path configFileWritePath = writeBasePath.get().resolve(testPackConfigPath).resolve(testPackId + ".json");
 
             Collection<TransformTestResult> transformTestResults = entry.getValue();
-            List<SampleModel> sampleModelList = transformTestResults.stream()
-                    .map(TransformTestResult::getSampleModel)
+            List<SampleModel> sampleModelList = Stream.concat(
+                            transformTestResults.stream().map(TransformTestResult::getSampleModel),
+                            getOtherShardSamples(configFileWritePath, model, shard))
                     .sorted(Comparator.comparing(SampleModel::getId))
                     .collect(Collectors.toList());
             TestPackModel testPackModel = new TestPackModel(model.getId(), model.getPipelineId(), model.getName(), sampleModelList);
-            String configFileContent = CONFIG_WRITER.writeValueAsString(testPackModel);
 
-            // Add environment variable TEST_WRITE_BASE_PATH to override the base write path, e.g.
-            // TEST_WRITE_BASE_PATH=/repo-location/src/main/resources/
-            TestingExpectationUtil.TEST_WRITE_BASE_PATH
-                    .filter(Files::exists)
-                    .ifPresent(writeBasePath -> {
-                        // 1. write new test pack config file
-                        Path configFileWritePath = writeBasePath.resolve(testPackConfigPath).resolve(testPackModel.getId() + ".json");
-                        TestingExpectationUtil.writeFile(configFileWritePath, configFileContent, TestingExpectationUtil.CREATE_EXPECTATION_FILES);
+            // 1. write new test pack config file
+            files.put(configFileWritePath, CONFIG_WRITER.writeValueAsString(testPackModel));
 
-                        // 2. write new output json/xml
-                        transformTestResults.stream()
-                                .forEach(r -> TestingExpectationUtil.writeFile(writeBasePath.resolve(r.getSampleModel().getOutputPath()), r.getOutput(), TestingExpectationUtil.CREATE_EXPECTATION_FILES));
-                    });
+            // 2. write new output json/xml
+            transformTestResults.forEach(r -> files.put(writeBasePath.get().resolve(r.getSampleModel().getOutputPath()), r.getOutput()));
+        }
+        ExpectationWriter.writeAll(files, TestingExpectationUtil.CREATE_EXPECTATION_FILES);
+    }
+
+    /**
+     * Samples of the test pack that belong to other shards, from the config file being overwritten if it exists
+     * (as another shard may already have updated it), otherwise from the classpath.
+     */
+    private static Stream<SampleModel> getOtherShardSamples(Path configFileWritePath, TestPackModel model, SampleShard shard) {
+        if (!shard.isSharded()) {
+            return Stream.empty();
+        }
+        TestPackModel existingModel;
+        try {
+            existingModel = Files.exists(configFileWritePath) ?
+                    CONFIG_READER.readValue(configFileWritePath.toFile(), TestPackModel.class) :
+                    model;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return existingModel.getSamples().stream()
+                .filter(s -> !shard.includes(model.getId(), s.getId()));
     }
 
     private static TestPackModel getTestPackModel(String testPackId, ClassLoader classLoader, Path resourcePath) {
-        List<URL> testPackUrls = findPaths(resourcePath, classLoader, "test-pack-.*\\.json");
-        ObjectMapper mapper = RosettaObjectMapper.getNewRosettaObjectMapper();
-        return testPackUrls.stream()
-                .map(url -> readFile(url, mapper, TestPackModel.class))
-                .filter(testPackModel -> testPackModel.getId() != null)
-                .filter(testPackModel -> testPackModel.getId().equals(testPackId))
-                .findFirst()
+        return TransformConfigIndex.get(resourcePath, classLoader)
+                .getTestPackModel(testPackId)
                 .orElseThrow();
     }
 }
@@ -0,0 +1,132 @@
+package com.regnosys.testing.transform;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.google.common.annotations.VisibleForTesting;
+import com.rosetta.model.lib.RosettaModelObject;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.function.Function;
+
+/**
+ * Creates a {@link Function} that calls the {@code evaluate} method of a generated function directly, rather than
+ * through {@link Method#invoke}, so the call can be inlined by the JIT.
+ * <p>
+ * The call site is built once per function, using {@link LambdaMetafactory} with a lookup in the function class. If
+ * the lambda class cannot be created, a bound {@link MethodHandle} is used instead, which is equivalent but may not be
+ * inlined as well.
+ */
+public class TransformFunctionFactory {
+
+    private static final MethodType FUNCTION_APPLY_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private TransformFunctionFactory() {
+    }
+
+    /**
+     * @param functionInstance - generated function instance, e.g. from the model runtime injector
+     * @param inputType        - parameter type of the evaluate method
+     */
+    public static <IN extends RosettaModelObject, OUT extends RosettaModelObject> Function<IN, OUT> create(Object functionInstance, Class<IN> inputType) {
+        return create(functionInstance, inputType, true);
+    }
+
+    @VisibleForTesting
+    static <IN extends RosettaModelObject, OUT extends RosettaModelObject> Function<IN, OUT> create(Object functionInstance, Class<IN> inputType, boolean useLambda) {
+        Method evaluateMethod;
+        try {
+            evaluateMethod = functionInstance.getClass().getMethod("evaluate", inputType);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(String.format("Evaluate method with input type %s not found", inputType.getName()), e);
+        }
+        MethodHandles.Lookup lookup = functionLookup(functionInstance.getClass());
+        MethodHandle evaluateHandle;
+        try {
+            evaluateHandle = (lookup != null ? lookup : MethodHandles.lookup()).unreflect(evaluateMethod);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(String.format("Evaluate method of %s not accessible", functionInstance.getClass().getName()), e);
+        }
+        if (!useLambda || lookup == null) {
+            return createBoundHandle(evaluateHandle, functionInstance);
+        }
+        CallSite callSite;
+        try {
+            callSite = LambdaMetafactory.metafactory(lookup,
+                    "apply",
+                    MethodType.methodType(Function.class, evaluateMethod.getDeclaringClass()),
+                    FUNCTION_APPLY_TYPE,
+                    evaluateHandle,
+                    MethodType.methodType(evaluateMethod.getReturnType(), evaluateMethod.getParameterTypes()));
+        } catch (LambdaConversionException | LinkageError e) {
+            // only when the lambda class cannot be created for the evaluate method. The evaluate method itself is not
+            // called here, so its exceptions are never caught by this fallback.
+            return createBoundHandle(evaluateHandle, functionInstance);
+        }
+        return createLambda(callSite, functionInstance);
+    }
+
+    /**
+     * Lookup in the function class, so the lambda class is defined by the class loader of the function and resolves
+     * the same classes as the function does when first applied, rather than failing on the first call if the function
+     * is loaded by a class loader this class cannot see. If the function class is in another module, e.g. the unnamed
+     * module of a child class loader, the lookup may not have the full privilege the metafactory needs, in which case
+     * the bound method handle is used. Null if the function class is in a module that is not open to this class.
+     */
+    private static MethodHandles.Lookup functionLookup(Class<?> functionClass) {
+        try {
+            return MethodHandles.privateLookupIn(functionClass, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <IN, OUT> Function<IN, OUT> createLambda(CallSite callSite, Object functionInstance) {
+        try {
+            // binds the function instance, and does not call evaluate
+            return (Function<IN, OUT>) callSite.getTarget().invoke(functionInstance);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to create function for evaluate method", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <IN, OUT> Function<IN, OUT> createBoundHandle(MethodHandle evaluateHandle, Object functionInstance) {
+        MethodHandle boundHandle = evaluateHandle.bindTo(functionInstance).asType(FUNCTION_APPLY_TYPE);
+        return input -> {
+            try {
+                return (OUT) boundHandle.invokeExact((Object) input);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException("Failed to invoke evaluate method", e);
+            }
+        };
+    }
+}
@@ -24,9 +24,11 @@ import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
 import com.google.common.io.Resources;
-import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Module;
 import com.regnosys.rosetta.common.hashing.ReferenceConfig;
@@ -34,9 +36,10 @@ import com.regnosys.rosetta.common.hashing.ReferenceResolverProcessStep;
 import com.regnosys.rosetta.common.serialisation.RosettaObjectMapper;
 import com.regnosys.rosetta.common.transform.PipelineModel;
 import com.regnosys.rosetta.common.transform.TestPackModel;
-import com.regnosys.rosetta.common.transform.TestPackUtils;
 import com.regnosys.rosetta.common.validation.RosettaTypeValidator;
 import com.regnosys.rosetta.common.validation.ValidationReport;
+import com.regnosys.testing.InjectorRegistry;
+import com.regnosys.testing.validation.XsdValidationService;
 import com.rosetta.model.lib.RosettaModelObject;
 import com.rosetta.model.lib.RosettaModelObjectBuilder;
 import org.junit.jupiter.api.AfterAll;
@@ -47,30 +50,31 @@ import org.junit.jupiter.api.extension.ExtensionContext;
 import org.junit.jupiter.params.provider.Arguments;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xml.sax.SAXException;
 
 import javax.inject.Inject;
-import javax.xml.XMLConstants;
-import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
-import javax.xml.validation.Validator;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static com.regnosys.rosetta.common.transform.TestPackUtils.*;
 import static com.regnosys.testing.TestingExpectationUtil.readStringFromResources;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
-
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the samples of the test packs of a transform function, and writes updated expectations after all tests.
+ * <p>
+ * Safe to use with junit.jupiter.execution.parallel.enabled: results are collected in a synchronised multimap,
+ * schema validation borrows a validator per concurrent thread, and expectations are written in sorted order.
+ */
 public class TransformTestExtension<T> implements BeforeAllCallback, AfterAllCallback {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TransformTestExtension.class);
@@ -82,16 +86,24 @@ public class TransformTestExtension<T> implements BeforeAllCallback, AfterAllCal
                     .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
                     .writerWithDefaultPrettyPrinter();
 
+    private static final OutputComparator OUTPUT_COMPARATOR = new OutputComparator();
+
     private final Module runtimeModule;
     private final Path configPath;
     private final Class<T> funcType;
-    private Validator xsdValidator;
+    private XsdValidationService xsdValidator;
     @Inject RosettaTypeValidator typeValidator;
     @Inject ReferenceConfig referenceConfig;
     private Multimap<String, TransformTestResult> actualExpectation;
     private PipelineModel pipelineModel;
     private Injector injector;
     private ObjectWriter outputObjectWriter;
+    private boolean sharedInjector = InjectorRegistry.SHARE_INJECTORS;
+    private SampleShard shard = SampleShard.fromSystemProperties();
+    private LatencyGate latencyGate;
+    private LatencyBaseline latencyBaseline;
+    private ImmutableList<String> impactAnalysisRosettaPaths;
+    private TestImpactAnalysis testImpactAnalysis = TestImpactAnalysis.all();
 
 
     public TransformTestExtension(Module runtimeModule, Path configPath, Class<T> funcType) {
@@ -101,48 +113,133 @@ public class TransformTestExtension<T> implements BeforeAllCallback, AfterAllCal
     }
 
     public TransformTestExtension<T> withSchemaValidation(URL xsdSchema) {
-        try {
-            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            // required to process xml elements with an maxOccurs greater than 5000 (rather than unbounded)
-            schemaFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, false);
-            Schema schema = schemaFactory.newSchema(xsdSchema);
-            this.xsdValidator = schema.newValidator();
-        } catch (SAXException e) {
-            throw new RuntimeException(e);
-        }
+        this.xsdValidator = XsdValidationService.create(xsdSchema);
+        return this;
+    }
+
+    /**
+     * Reuses one injector per runtime module type across all test classes in the JVM, rather than creating an
+     * injector per test class. Also enabled for all test classes by environment variable SHARE_INJECTORS=true.
+     */
+    public TransformTestExtension<T> withSharedInjector() {
+        this.sharedInjector = true;
+        return this;
+    }
+
+    /**
+     * Runs only the samples of the shard, rather than the shard set by system properties
+     * {@link SampleShard#SHARD_INDEX_PROPERTY} and {@link SampleShard#SHARD_COUNT_PROPERTY}.
+     */
+    public TransformTestExtension<T> withShard(SampleShard shard) {
+        this.shard = shard;
+        return this;
+    }
+
+    /**
+     * Measures the evaluate latency of each sample and checks it against the baseline stored next to the test pack
+     * configs, relative to a calibration run so the baseline holds across machines. Writing expectations adds the
+     * baseline of new samples; existing baselines are only replaced when UPDATE_LATENCY_BASELINE is also set.
+     */
+    public TransformTestExtension<T> withLatencyGate(LatencyGate latencyGate) {
+        this.latencyGate = latencyGate;
+        return this;
+    }
+
+    /**
+     * Runs the samples only if the function depends on a rosetta file listed in system property
+     * {@link TestImpactAnalysis#CHANGED_FILES_PROPERTY}, or the property is not set.
+     *
+     * @param rosettaPaths - classpath folders of the rosetta files, e.g. "rosetta"
+     */
+    public TransformTestExtension<T> withTestImpactAnalysis(ImmutableList<String> rosettaPaths) {
+        this.impactAnalysisRosettaPaths = rosettaPaths;
         return this;
     }
 
     @BeforeAll
     public void beforeAll(ExtensionContext context) {
-        this.injector = Guice.createInjector(runtimeModule);
+        this.injector = sharedInjector ? InjectorRegistry.getOrCreate(runtimeModule) : InjectorRegistry.create(runtimeModule);
         this.injector.injectMembers(this);
         ClassLoader classLoader = this.getClass().getClassLoader();
-        this.pipelineModel = getPipelineModel(getPipelineModels(configPath, classLoader, JSON_OBJECT_MAPPER), funcType.getName());
+        this.pipelineModel = TransformConfigIndex.get(configPath, classLoader).getPipelineModel(funcType.getName());
         this.outputObjectWriter = getObjectWriter(pipelineModel.getOutputSerialisation()).orElse(JSON_OBJECT_WRITER);
-        this.actualExpectation = ArrayListMultimap.create();
+        // samples may run concurrently when junit.jupiter.execution.parallel.enabled is set
+        this.actualExpectation = Multimaps.synchronizedListMultimap(ArrayListMultimap.create());
+        if (latencyGate != null) {
+            this.latencyBaseline = LatencyBaseline.load(configPath, funcType);
+        }
+        if (impactAnalysisRosettaPaths != null) {
+            this.testImpactAnalysis = TestImpactAnalysis.fromSystemProperties(impactAnalysisRosettaPaths);
+            // skips the test class, as a parameterized test with no arguments fails
+            assumeTrue(testImpactAnalysis.isAffected(pipelineModel, TransformConfigIndex.get(configPath, classLoader)),
+                    funcType.getName() + " is not affected by the changed rosetta files");
+        }
     }
 
     @AfterAll
     public void afterAll(ExtensionContext context) throws Exception {
-        writeExpectations(actualExpectation);
+        writeExpectations(getSortedExpectations());
+        if (latencyBaseline != null) {
+            latencyBaseline.write();
+        }
+        if (xsdValidator != null) {
+            xsdValidator.logStats();
+        }
+    }
+
+    /**
+     * Results ordered by test pack id then sample id, so expectations are written the same way whatever order the
+     * samples ran in.
+     */
+    private Multimap<String, TransformTestResult> getSortedExpectations() {
+        ImmutableListMultimap.Builder<String, TransformTestResult> sortedExpectations = ImmutableListMultimap.builder();
+        synchronized (actualExpectation) {
+            new TreeMap<>(actualExpectation.asMap()).forEach((testPackId, results) ->
+                    sortedExpectations.putAll(testPackId, results.stream()
+                            .sorted(Comparator.comparing(r -> r.getSampleModel().getId()))
+                            .collect(Collectors.toList())));
+        }
+        return sortedExpectations.build();
     }
 
     public <IN extends RosettaModelObject, OUT extends RosettaModelObject> void runTransformAndAssert(
             String testPackId, TestPackModel.SampleModel sampleModel, Function<IN, OUT> transformFunc) {
 
-        TransformTestResult result = getResult(sampleModel, transformFunc);
+        // the timed runs reuse the input read and resolved for the result
+        Function<IN, OUT> resultFunc = latencyBaseline != null
+                ? latencyBaseline.measuring(testPackId, sampleModel.getId(), latencyGate, transformFunc)
+                : transformFunc;
+        TransformTestResult result = getResult(sampleModel, resultFunc);
 
         actualExpectation.put(testPackId, result);
 
         String actualOutput = result.getOutput();
         Path outputPath = Path.of(sampleModel.getOutputPath());
         String expectedOutput = readStringFromResources(outputPath);
-        assertEquals(expectedOutput, actualOutput);
+        // bounded structural diff, as a full string diff of large outputs is unreadable
+        String outputDifferences = OUTPUT_COMPARATOR.describe(expectedOutput, actualOutput);
+        if (outputDifferences != null) {
+            fail(outputPath + ": " + outputDifferences);
+        }
 
         TestPackModel.SampleModel.Assertions actualAssertions = result.getSampleModel().getAssertions();
         TestPackModel.SampleModel.Assertions expectedAssertions = sampleModel.getAssertions();
         assertEquals(expectedAssertions, actualAssertions);
+
+        if (latencyBaseline != null && actualOutput != null) {
+            assertLatency(testPackId, sampleModel);
+        }
+    }
+
+    protected void assertLatency(String testPackId, TestPackModel.SampleModel sampleModel) {
+        latencyBaseline.check(testPackId, sampleModel.getId(), latencyGate)
+                .ifPresent(regression -> {
+                    if (latencyGate.isFailOnRegression()) {
+                        fail(regression);
+                    } else {
+                        LOGGER.warn(regression);
+                    }
+                });
     }
 
     protected <IN extends RosettaModelObject, OUT extends RosettaModelObject> TransformTestResult getResult(TestPackModel.SampleModel sampleModel, Function<IN, OUT> function) {
@@ -178,12 +275,25 @@ public class TransformTestExtension<T> implements BeforeAllCallback, AfterAllCal
         }
     }
 
+    /**
+     * Direct call to the evaluate method of the function under test, for use as the transform function of
+     * {@link #runTransformAndAssert}.
+     */
+    public <IN extends RosettaModelObject, OUT extends RosettaModelObject> Function<IN, OUT> getTransformFunction() {
+        return TransformFunctionFactory.create(injector.getInstance(funcType), getInputType());
+    }
+
     public Stream<Arguments> getArguments() {
         T func = injector.getInstance(funcType);
         ClassLoader classLoader = this.getClass().getClassLoader();
-        List<TestPackModel> testPackModels = getTestPackModels(TestPackUtils.getTestPackModels(configPath, classLoader, JSON_OBJECT_MAPPER), pipelineModel.getId());
+        TransformConfigIndex index = TransformConfigIndex.get(configPath, classLoader);
+        if (!testImpactAnalysis.isAffected(pipelineModel, index)) {
+            return Stream.empty();
+        }
+        List<TestPackModel> testPackModels = index.getTestPackModels(pipelineModel.getId());
         return testPackModels.stream()
                 .flatMap(testPackModel -> testPackModel.getSamples().stream()
+                        .filter(sampleModel -> shard.includes(testPackModel.getId(), sampleModel.getId()))
                         .map(sampleModel ->
                                 Arguments.of(
                                         String.format("%s | %s", testPackModel.getName(), sampleModel.getId()),
@@ -217,22 +327,14 @@ public class TransformTestExtension<T> implements BeforeAllCallback, AfterAllCal
     }
 
     protected void writeExpectations(Multimap<String, TransformTestResult> actualExpectation) throws Exception {
-        TransformExpectationUtil.writeExpectations(actualExpectation, configPath);
+        TransformExpectationUtil.writeExpectations(actualExpectation, configPath, shard);
     }
 
     protected Boolean isSchemaValidationFailure(String actualXml) {
         if (xsdValidator == null) {
             return null;
         }
-        try (ByteArrayInputStream inputStream = new ByteArrayInputStream(actualXml.getBytes(StandardCharsets.UTF_8))) {
-            xsdValidator.validate(new StreamSource(inputStream));
-            return true;
-        } catch (SAXException e) {
-            LOGGER.error("Schema validation failed: {}", e.getMessage());
-            return false;
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
+        return xsdValidator.validate(actualXml);
     }
 
     protected TestPackModel.SampleModel updateSampleModel(TestPackModel.SampleModel sampleModel, TestPackModel.SampleModel.Assertions assertions) {
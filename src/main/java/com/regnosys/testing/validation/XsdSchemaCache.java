@@ -0,0 +1,186 @@
+package com.regnosys.testing.validation;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Process-wide cache of compiled XSD schemas, keyed by schema URL, so each schema is only compiled once per JVM however
+ * many pipelines or test classes validate against it.
+ * <p>
+ * The schema is recompiled if the size or last modified time of the schema file, or of any file it includes or
+ * imports, has changed, so a lookup only reads the file attributes rather than the files. Schemas that are not files,
+ * e.g. resources in a jar, are not checked for changes, but can be recompiled after {@link #invalidate}. Each schema
+ * is compiled outside any lock held by other schemas, so compiling one schema does not block lookups of the others.
+ * <p>
+ * A compiled {@link Schema} is thread-safe, but the {@link Validator}s it creates are not, so callers get a new
+ * validator per thread or per use.
+ */
+public class XsdSchemaCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(XsdSchemaCache.class);
+
+    private static final Cache<String, CompiledSchema> SCHEMAS = CacheBuilder.newBuilder().build();
+
+    private XsdSchemaCache() {
+    }
+
+    public static Validator newValidator(URL schemaUrl) {
+        return getSchema(schemaUrl).newValidator();
+    }
+
+    public static Schema getSchema(URL schemaUrl) {
+        String key = schemaUrl.toExternalForm();
+        while (true) {
+            CompiledSchema compiledSchema = get(key, schemaUrl);
+            if (!compiledSchema.isChanged()) {
+                return compiledSchema.schema;
+            }
+            LOGGER.info("Schema {} or a schema it includes has changed", schemaUrl);
+            SCHEMAS.asMap().remove(key, compiledSchema);
+        }
+    }
+
+    /**
+     * Removes the compiled schema, so it is recompiled on the next lookup.
+     */
+    public static void invalidate(URL schemaUrl) {
+        SCHEMAS.invalidate(schemaUrl.toExternalForm());
+    }
+
+    private static CompiledSchema get(String key, URL schemaUrl) {
+        try {
+            // only blocks other lookups of the same schema while it is compiled
+            return SCHEMAS.get(key, () -> compile(schemaUrl));
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static CompiledSchema compile(URL schemaUrl) {
+        LOGGER.info("Compiling schema {}", schemaUrl);
+        long start = System.currentTimeMillis();
+        // the schema and every schema it includes or imports, with their file attributes from before they were read
+        List<SchemaResource> resources = new ArrayList<>();
+        resources.add(new SchemaResource(schemaUrl));
+        try {
+            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            // required to process xml elements with an maxOccurs greater than 5000 (rather than unbounded)
+            schemaFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, false);
+            // records each included or imported schema, and returns null so it is then resolved as normal
+            schemaFactory.setResourceResolver((type, namespaceUri, publicId, systemId, baseUri) -> {
+                if (systemId != null) {
+                    resolve(baseUri, systemId, schemaUrl).map(SchemaResource::new).ifPresent(resources::add);
+                }
+                return null;
+            });
+            Schema schema = schemaFactory.newSchema(schemaUrl);
+            LOGGER.info("Compiled schema {} in {}ms", schemaUrl, System.currentTimeMillis() - start);
+            return new CompiledSchema(schema, resources);
+        } catch (SAXException e) {
+            throw new RuntimeException(String.format("Failed to create schema validator for %s", schemaUrl), e);
+        }
+    }
+
+    private static Optional<URL> resolve(String baseUri, String systemId, URL schemaUrl) {
+        try {
+            return Optional.of(new URL(baseUri != null ? new URL(baseUri) : schemaUrl, systemId));
+        } catch (MalformedURLException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static final class CompiledSchema {
+        private final Schema schema;
+        private final List<SchemaResource> resources;
+
+        private CompiledSchema(Schema schema, List<SchemaResource> resources) {
+            this.schema = schema;
+            this.resources = List.copyOf(resources);
+        }
+
+        private boolean isChanged() {
+            return resources.stream().anyMatch(SchemaResource::isChanged);
+        }
+    }
+
+    private static final class SchemaResource {
+        private final Path file;
+        private final String attributes;
+
+        private SchemaResource(URL url) {
+            this.file = toFile(url);
+            this.attributes = readAttributes(file);
+        }
+
+        private boolean isChanged() {
+            return !attributes.equals(readAttributes(file));
+        }
+
+        /**
+         * @return the file of a file URL, otherwise null as only files are checked for changes
+         */
+        private static Path toFile(URL url) {
+            if (!"file".equals(url.getProtocol())) {
+                return null;
+            }
+            try {
+                return Path.of(url.toURI());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        private static String readAttributes(Path file) {
+            if (file == null) {
+                return "";
+            }
+            try {
+                return Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis();
+            } catch (IOException e) {
+                // e.g. deleted since compiled
+                return "missing";
+            }
+        }
+    }
+}
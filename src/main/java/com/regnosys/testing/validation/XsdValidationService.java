@@ -0,0 +1,139 @@
+package com.regnosys.testing.validation;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe XSD validation against a shared compiled {@link Schema}.
+ * <p>
+ * A {@link Validator} is not thread-safe, so each validation borrows one from a pool, creating a new validator only
+ * when all pooled validators are in use. The pool therefore grows to the number of threads validating concurrently.
+ */
+public class XsdValidationService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(XsdValidationService.class);
+
+    public static XsdValidationService create(URL schemaUrl) {
+        return new XsdValidationService(schemaUrl.toString(), XsdSchemaCache.getSchema(schemaUrl));
+    }
+
+    private final String schemaName;
+    private final Schema schema;
+    private final Queue<Validator> idleValidators = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger createdCount = new AtomicInteger();
+    private final AtomicInteger inUseCount = new AtomicInteger();
+    private final AtomicInteger peakInUseCount = new AtomicInteger();
+    private final AtomicLong validationCount = new AtomicLong();
+
+    public XsdValidationService(String schemaName, Schema schema) {
+        this.schemaName = schemaName;
+        this.schema = schema;
+    }
+
+    /**
+     * @return true if the xml is valid, otherwise false and the validation error is logged
+     */
+    public boolean validate(String xml) {
+        return validate(new StreamSource(new StringReader(xml)));
+    }
+
+    /**
+     * @return true if the xml is valid, otherwise false and the validation error is logged
+     */
+    public boolean validate(InputStream xml) {
+        return validate(new StreamSource(xml));
+    }
+
+    private boolean validate(StreamSource xml) {
+        Validator validator = borrowValidator();
+        try {
+            validator.validate(xml);
+            return true;
+        } catch (SAXException e) {
+            LOGGER.error("Schema validation failed: {}", e.getMessage());
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            returnValidator(validator);
+        }
+    }
+
+    private Validator borrowValidator() {
+        int inUse = inUseCount.incrementAndGet();
+        peakInUseCount.accumulateAndGet(inUse, Math::max);
+        validationCount.incrementAndGet();
+        Validator validator = idleValidators.poll();
+        if (validator == null) {
+            createdCount.incrementAndGet();
+            validator = schema.newValidator();
+        }
+        return validator;
+    }
+
+    private void returnValidator(Validator validator) {
+        validator.reset();
+        idleValidators.offer(validator);
+        inUseCount.decrementAndGet();
+    }
+
+    /**
+     * Number of validators created, i.e. the pool size.
+     */
+    public int getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public int getInUseCount() {
+        return inUseCount.get();
+    }
+
+    public int getPeakInUseCount() {
+        return peakInUseCount.get();
+    }
+
+    public long getValidationCount() {
+        return validationCount.get();
+    }
+
+    public void logStats() {
+        LOGGER.info("Schema {} validations {}, validators created {}, peak in use {}",
+                schemaName,
+                getValidationCount(),
+                getCreatedCount(),
+                getPeakInUseCount());
+    }
+}
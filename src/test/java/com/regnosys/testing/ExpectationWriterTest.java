@@ -0,0 +1,83 @@
+package com.regnosys.testing;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.regnosys.testing.ExpectationWriter.Result;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpectationWriterTest {
+
+    @Test
+    void shouldOnlyWriteChangedFiles(@TempDir Path dir) throws IOException {
+        Path unchanged = dir.resolve("unchanged.json");
+        Path changed = dir.resolve("changed.json");
+        Path added = dir.resolve("new/added.json");
+        Files.writeString(unchanged, "{\"a\":1}");
+        Files.writeString(changed, "{\"a\":1}");
+        FileTime unchangedModified = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(unchanged, unchangedModified);
+
+        Map<Path, String> files = new LinkedHashMap<>();
+        files.put(unchanged, "{\"a\":1}");
+        files.put(changed, "{\"a\":2}");
+        files.put(added, "{\"b\":1}");
+        Map<Result, Long> summary = ExpectationWriter.writeAll(files, true);
+
+        assertEquals(1L, (long) summary.get(Result.ADDED));
+        assertEquals(1L, (long) summary.get(Result.CHANGED));
+        assertEquals(1L, (long) summary.get(Result.UNCHANGED));
+        assertEquals(unchangedModified, Files.getLastModifiedTime(unchanged));
+        assertEquals("{\"a\":2}", Files.readString(changed));
+        assertEquals("{\"b\":1}", Files.readString(added));
+        try (var paths = Files.list(dir)) {
+            assertFalse(paths.anyMatch(p -> p.toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    void shouldWriteInPlatformDefaultCharset(@TempDir Path dir) throws IOException {
+        Path path = dir.resolve("charset.json");
+        String content = "{\"name\":\"Soci\u00e9t\u00e9\"}";
+
+        assertEquals(Result.ADDED, ExpectationWriter.write(path, content, true));
+        assertArrayEquals(content.getBytes(Charset.defaultCharset()), Files.readAllBytes(path));
+        assertEquals(Result.UNCHANGED, ExpectationWriter.write(path, content, true));
+    }
+
+    @Test
+    void shouldNotCreateFilesUnlessEnabled(@TempDir Path dir) {
+        Path missing = dir.resolve("missing.json");
+
+        assertEquals(Result.SKIPPED, ExpectationWriter.write(missing, "{}", false));
+        assertFalse(Files.exists(missing));
+    }
+}
@@ -0,0 +1,84 @@
+package com.regnosys.testing;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+
+import com.regnosys.rosetta.common.reports.ReportField;
+import com.rosetta.model.lib.reports.Tabulator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FieldNameTemplatesTest {
+
+    private final Tabulator.Field group = field("Leg $", true);
+    private final Tabulator.Field name = field("Name", false);
+    private final Tabulator.Field notional = field("Notional", false);
+
+    private final List<Tabulator.FieldValue> report = List.of(
+            new Tabulator.FieldValueImpl(name, Optional.of("Party A")),
+            new Tabulator.MultiNestedFieldValueImpl(group, Optional.of(List.of(
+                    List.of(new Tabulator.FieldValueImpl(notional, Optional.of("100"))),
+                    List.of(new Tabulator.FieldValueImpl(notional, Optional.of("200")))))));
+
+    private final Tabulator<Object> tabulator = item -> report;
+
+    @Test
+    void shouldShareTemplatesBetweenFlattenersOfTheSameTabulator() {
+        FieldValueFlattener first = new FieldValueFlattener(tabulator);
+        FieldValueFlattener second = new FieldValueFlattener(tabulator, reportField -> {
+        });
+
+        assertSame(FieldNameTemplates.forTabulator(tabulator), first.getTemplates());
+        assertSame(first.getTemplates(), second.getTemplates());
+        Tabulator<Object> otherTabulator = item -> report;
+        assertNotSame(first.getTemplates(), new FieldValueFlattener(otherTabulator).getTemplates());
+    }
+
+    @Test
+    void shouldFlattenToTheSameNamesWithSharedTemplates() {
+        List<String> expected = List.of("Name", "Leg $ -> Notional (1)", "Leg $ -> Notional (2)");
+
+        assertEquals(expected, flatten(new FieldValueFlattener()));
+        assertEquals(expected, flatten(new FieldValueFlattener(tabulator)));
+        // the second flattener fills in the templates compiled by the first
+        assertEquals(expected, flatten(new FieldValueFlattener(tabulator)));
+
+        List<String> sunk = new ArrayList<>();
+        FieldValueFlattener sinkFlattener = new FieldValueFlattener(tabulator, reportField -> sunk.add(reportField.getName()));
+        tabulator.tabulate(null).forEach(fieldValue -> fieldValue.accept(sinkFlattener, new ArrayList<>()));
+        assertEquals(expected, sunk);
+    }
+
+    private List<String> flatten(FieldValueFlattener flattener) {
+        tabulator.tabulate(null).forEach(fieldValue -> fieldValue.accept(flattener, new ArrayList<>()));
+        return flattener.accumulator.stream().map(ReportField::getName).collect(Collectors.toList());
+    }
+
+    private static Tabulator.Field field(String name, boolean isMulti) {
+        return new Tabulator.FieldImpl(name, isMulti, Optional.empty(), Optional.empty(), List.of());
+    }
+}
@@ -0,0 +1,170 @@
+package com.regnosys.testing;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+
+import com.regnosys.rosetta.common.reports.ReportField;
+import com.rosetta.model.lib.ModelSymbolId;
+import com.rosetta.model.lib.reports.Tabulator;
+import com.rosetta.util.DottedPath;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FieldValueFlattenerTest {
+
+    private final Tabulator.Field reportingParty = field("Reporting Party", false, "ReportingParty");
+    private final Tabulator.Field counterparty = field("Counterparty", false, null);
+    private final Tabulator.Field counterpartyName = field("Name", false, "CounterpartyName");
+    private final Tabulator.Field leg = field("Leg", true, null);
+    private final Tabulator.Field notional = field("Notional", false, "Notional");
+    private final Tabulator.Field schedule = field("Schedule $", true, null);
+    private final Tabulator.Field date = field("Date", false, "ScheduleDate");
+    private final Tabulator.Field comment = field("Comment", false, null);
+
+    private final List<Tabulator.FieldValue> report = List.of(
+            single(reportingParty, "Party A"),
+            nested(counterparty,
+                    single(counterpartyName, "Party B"),
+                    single(comment, null)),
+            multi(leg,
+                    List.of(
+                            single(notional, "100"),
+                            multi(schedule,
+                                    List.of(single(date, "2024-01-01")),
+                                    List.of(single(date, "2024-07-01")))),
+                    List.of(
+                            single(notional, null),
+                            multi(schedule,
+                                    List.of(single(date, "2025-01-01"))))),
+            new Tabulator.NestedFieldValueImpl(comment, Optional.empty()));
+
+    @Test
+    void shouldFlattenNestedAndRepeatableFields() {
+        FieldValueFlattener flattener = new FieldValueFlattener();
+        report.forEach(fieldValue -> fieldValue.accept(flattener, new ArrayList<>()));
+
+        assertEquals(List.of(
+                "Reporting Party | null | test.reports.ReportingParty | Party A",
+                "Counterparty -> Name | null | test.reports.CounterpartyName | Party B",
+                "Leg -> Notional (1) | 1 | test.reports.Notional | 100",
+                "Leg -> Schedule 1 -> Date (1) | 1 | test.reports.ScheduleDate | 2024-01-01",
+                "Leg -> Schedule 1 -> Date (2) | 2 | test.reports.ScheduleDate | 2024-07-01",
+                "Leg -> Schedule 2 -> Date (1) | 1 | test.reports.ScheduleDate | 2025-01-01"),
+                toStrings(flattener.accumulator));
+    }
+
+    @Test
+    void shouldFlattenBelowTheGivenParents() {
+        FieldValueFlattener flattener = new FieldValueFlattener();
+        List<FieldValueFlattener.ParentAndIndex> parents = List.of(new FieldValueFlattener.ParentAndIndex("Trade", 3));
+        report.forEach(fieldValue -> fieldValue.accept(flattener, parents));
+
+        assertEquals(List.of(
+                "Trade -> Reporting Party (3) | 3 | test.reports.ReportingParty | Party A",
+                "Trade -> Counterparty (3) -> Name | null | test.reports.CounterpartyName | Party B",
+                "Trade -> Leg (3) -> Notional (1) | 1 | test.reports.Notional | 100",
+                "Trade -> Leg (3) -> Schedule 1 -> Date (1) | 1 | test.reports.ScheduleDate | 2024-01-01",
+                "Trade -> Leg (3) -> Schedule 1 -> Date (2) | 2 | test.reports.ScheduleDate | 2024-07-01",
+                "Trade -> Leg (3) -> Schedule 2 -> Date (1) | 1 | test.reports.ScheduleDate | 2025-01-01"),
+                toStrings(flattener.accumulator));
+    }
+
+    @Test
+    void shouldFlattenGroupsInParallelInSequentialOrder() {
+        int minimumGroupSize = 8;
+        for (int groupSize : new int[]{minimumGroupSize - 1, minimumGroupSize, minimumGroupSize + 1, 100}) {
+            List<Tabulator.FieldValue> largeReport = List.of(
+                    single(reportingParty, "Party A"),
+                    new Tabulator.MultiNestedFieldValueImpl(leg, Optional.of(IntStream.rangeClosed(1, groupSize)
+                            .mapToObj(i -> List.of(
+                                    single(notional, String.valueOf(i)),
+                                    multi(schedule,
+                                            List.of(single(date, i + "-1")),
+                                            List.of(single(date, i + "-2")))))
+                            .collect(Collectors.toList()))));
+
+            FieldValueFlattener sequential = new FieldValueFlattener();
+            largeReport.forEach(fieldValue -> fieldValue.accept(sequential, new ArrayList<>()));
+            List<String> expected = toStrings(sequential.accumulator);
+            assertEquals(1 + groupSize * 3, expected.size());
+
+            AtomicInteger workers = new AtomicInteger();
+            ForkJoinPool pool = new ForkJoinPool(4, p -> {
+                workers.incrementAndGet();
+                return ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            }, null, false);
+            try {
+                FieldValueFlattener parallel = new FieldValueFlattener().withParallelism(pool, minimumGroupSize);
+                largeReport.forEach(fieldValue -> fieldValue.accept(parallel, new ArrayList<>()));
+                assertEquals(expected, toStrings(parallel.accumulator), "group size " + groupSize);
+
+                List<ReportField> sunk = new ArrayList<>();
+                List<Thread> sinkThreads = new ArrayList<>();
+                FieldValueFlattener parallelSink = new FieldValueFlattener(reportField -> {
+                    sunk.add(reportField);
+                    sinkThreads.add(Thread.currentThread());
+                }).withParallelism(pool, minimumGroupSize);
+                largeReport.forEach(fieldValue -> fieldValue.accept(parallelSink, new ArrayList<>()));
+                assertEquals(expected, toStrings(sunk), "group size " + groupSize);
+                assertTrue(sinkThreads.stream().allMatch(t -> t == Thread.currentThread()));
+
+                assertEquals(groupSize >= minimumGroupSize, workers.get() > 0, "group size " + groupSize);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static List<String> toStrings(List<ReportField> reportFields) {
+        return reportFields.stream()
+                .map(f -> f.getName() + " | " + f.getRepeatableIndex() + " | " + f.getRuleId() + " | " + f.getValue())
+                .collect(Collectors.toList());
+    }
+
+    private static Tabulator.Field field(String name, boolean isMulti, String ruleName) {
+        Optional<ModelSymbolId> ruleId = Optional.ofNullable(ruleName)
+                .map(n -> new ModelSymbolId(DottedPath.splitOnDots("test.reports"), n));
+        return new Tabulator.FieldImpl(name, isMulti, ruleId, Optional.empty(), List.of());
+    }
+
+    private static Tabulator.FieldValue single(Tabulator.Field field, Object value) {
+        return new Tabulator.FieldValueImpl(field, Optional.ofNullable(value));
+    }
+
+    private static Tabulator.FieldValue nested(Tabulator.Field field, Tabulator.FieldValue... values) {
+        return new Tabulator.NestedFieldValueImpl(field, Optional.of(Arrays.asList(values)));
+    }
+
+    @SafeVarargs
+    private static Tabulator.FieldValue multi(Tabulator.Field field, List<Tabulator.FieldValue>... elements) {
+        return new Tabulator.MultiNestedFieldValueImpl(field, Optional.of(Arrays.asList(elements)));
+    }
+}
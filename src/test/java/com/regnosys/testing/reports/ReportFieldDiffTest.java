@@ -0,0 +1,102 @@
+package com.regnosys.testing.reports;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.regnosys.rosetta.common.reports.ReportField;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReportFieldDiffTest {
+
+    @Test
+    void shouldFindNoDifferencesIgnoringOrder() {
+        List<ReportField> expected = List.of(field("A", "1", null, "x"), field("B", "2", null, "y"));
+        List<ReportField> actual = List.of(field("B", "2", null, "y"), field("A", "1", null, "x"));
+
+        assertTrue(ReportFieldDiff.diff(expected, actual).isEmpty());
+    }
+
+    @Test
+    void shouldFindAddedRemovedAndChangedFields() {
+        List<ReportField> expected = List.of(field("A", "1", null, "x"), field("B", "2", null, "y"));
+        List<ReportField> actual = List.of(field("A", "1", null, "z"), field("C", "3", null, "w"));
+
+        ReportFieldDiff diff = ReportFieldDiff.diff(expected, actual);
+
+        assertEquals(1, diff.getChanged().size());
+        assertEquals("z", diff.getChanged().get(0).getActual().getValue());
+        assertEquals("B", diff.getRemoved().get(0).getName());
+        assertEquals("C", diff.getAdded().get(0).getName());
+        assertTrue(diff.getReordered().isEmpty());
+    }
+
+    @Test
+    void shouldReportReorderedRepeatableGroups() {
+        List<ReportField> expected = List.of(
+                field("Leg -> Notional (1)", "1", 1, "100"), field("Leg -> Currency (1)", "2", 1, "EUR"),
+                field("Leg -> Notional (2)", "1", 2, "200"), field("Leg -> Currency (2)", "2", 2, "USD"));
+        List<ReportField> actual = List.of(
+                field("Leg -> Notional (1)", "1", 1, "200"), field("Leg -> Currency (1)", "2", 1, "USD"),
+                field("Leg -> Notional (2)", "1", 2, "100"), field("Leg -> Currency (2)", "2", 2, "EUR"));
+
+        ReportFieldDiff diff = ReportFieldDiff.diff(expected, actual);
+
+        assertTrue(diff.getChanged().isEmpty(), diff.toString());
+        assertEquals(2, diff.getReordered().size());
+        assertEquals("Leg", diff.getReordered().get(0).getGroupPath());
+        assertEquals(2, diff.getReordered().get(0).getActualIndex());
+    }
+
+    @Test
+    void shouldReportReorderedRepeatableGroupsWithoutRuleIds() {
+        List<ReportField> expected = List.of(
+                field("Leg -> Notional (1)", null, 1, "100"), field("Leg -> Currency (1)", null, 1, "EUR"),
+                field("Leg -> Notional (2)", null, 2, "200"), field("Leg -> Currency (2)", null, 2, "USD"));
+        List<ReportField> actual = List.of(
+                field("Leg -> Notional (1)", null, 1, "200"), field("Leg -> Currency (1)", null, 1, "USD"),
+                field("Leg -> Notional (2)", null, 2, "100"), field("Leg -> Currency (2)", null, 2, "EUR"));
+
+        ReportFieldDiff diff = ReportFieldDiff.diff(expected, actual);
+
+        assertTrue(diff.getChanged().isEmpty(), diff.toString());
+        assertEquals(2, diff.getReordered().size());
+        assertEquals("Leg", diff.getReordered().get(0).getGroupPath());
+        assertEquals(2, diff.getReordered().get(0).getActualIndex());
+    }
+
+    @Test
+    void shouldReportChangedFieldsOfRepeatableGroupsThatDidNotMove() {
+        List<ReportField> expected = List.of(field("Leg -> Notional (1)", "1", 1, "100"), field("Leg -> Notional (2)", "1", 2, "200"));
+        List<ReportField> actual = List.of(field("Leg -> Notional (1)", "1", 1, "100"), field("Leg -> Notional (2)", "1", 2, "300"));
+
+        ReportFieldDiff diff = ReportFieldDiff.diff(expected, actual);
+
+        assertEquals(1, diff.getChanged().size());
+        assertTrue(diff.getReordered().isEmpty());
+    }
+
+    private static ReportField field(String name, String ruleId, Integer repeatableIndex, String value) {
+        return new ReportField(name, ruleId, repeatableIndex, value, "");
+    }
+}
@@ -0,0 +1,127 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.google.common.collect.ImmutableMultimap;
+import com.regnosys.rosetta.common.transform.TestPackModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Optional;
+
+import static com.regnosys.rosetta.common.transform.TestPackModel.SampleModel;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SampleFingerprintTest {
+
+    private static final ImmutableMultimap<String, String> NO_BINDINGS = ImmutableMultimap.of();
+
+    @Test
+    void shouldChangeFunctionHashOnlyWhenReachableClassChanges(@TempDir Path tempDir) throws Exception {
+        Path classes = tempDir.resolve("classes");
+        for (Class<?> c : List.of(ReportFunction.class, CalledFunction.class, BoundType.class, BoundImplementation.class, UnrelatedModelClass.class)) {
+            copyClassFile(c, classes);
+        }
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, null)) {
+            String function = SampleFingerprint.toInternalName(ReportFunction.class);
+            ImmutableMultimap<String, String> bindings = ImmutableMultimap.of(SampleFingerprint.toInternalName(BoundType.class), SampleFingerprint.toInternalName(BoundImplementation.class));
+            String before = SampleFingerprint.hashReachableClasses(function, classLoader, NO_BINDINGS);
+            String beforeWithBindings = SampleFingerprint.hashReachableClasses(function, classLoader, bindings);
+            assertNotNull(before);
+
+            changeClassFile(UnrelatedModelClass.class, classes);
+            assertEquals(before, SampleFingerprint.hashReachableClasses(function, classLoader, NO_BINDINGS));
+
+            // only reachable through the binding of a type the function refers to
+            changeClassFile(BoundImplementation.class, classes);
+            assertEquals(before, SampleFingerprint.hashReachableClasses(function, classLoader, NO_BINDINGS));
+            assertNotEquals(beforeWithBindings, SampleFingerprint.hashReachableClasses(function, classLoader, bindings));
+
+            // only the called function changes, not the report function itself
+            changeClassFile(CalledFunction.class, classes);
+            assertNotEquals(before, SampleFingerprint.hashReachableClasses(function, classLoader, NO_BINDINGS));
+
+            assertNull(SampleFingerprint.hashReachableClasses("model/functions/Missing", classLoader, NO_BINDINGS));
+        }
+    }
+
+    @Test
+    void shouldNotReuseSampleWhenFingerprintOrOutputFileChanges(@TempDir Path tempDir) throws Exception {
+        SampleFingerprint fingerprint = new SampleFingerprint("input-hash", "model.functions.ReportFunction", "function-hash", null, null);
+        Path outputFile = tempDir.resolve("output.json");
+        Files.writeString(outputFile, "{\"field\":1}");
+
+        Path manifestFile = tempDir.resolve("manifest.json");
+        TestPackManifest firstRun = TestPackManifest.load(manifestFile, Optional.empty());
+        firstRun.update("sample-1", fingerprint, SampleFingerprint.hashFile(outputFile));
+        firstRun.write();
+
+        Optional<TestPackModel> previousTestPack = Optional.of(new TestPackModel("test-pack-1", "pipeline-1", "Test Pack 1",
+                List.of(new SampleModel("sample-1", "Sample 1", "input.json", "output.json", null))));
+        assertTrue(TestPackManifest.load(manifestFile, previousTestPack).getUnchanged("sample-1", fingerprint, outputFile).isPresent());
+        assertTrue(TestPackManifest.load(manifestFile, previousTestPack).getUnchanged("sample-1", fingerprint.withInputHash("changed"), outputFile).isEmpty());
+        assertTrue(TestPackManifest.load(manifestFile, previousTestPack).getUnchanged("sample-1", fingerprint, tempDir.resolve("missing.json")).isEmpty());
+
+        Files.writeString(outputFile, "{\"field\":");
+        assertTrue(TestPackManifest.load(manifestFile, previousTestPack).getUnchanged("sample-1", fingerprint, outputFile).isEmpty());
+    }
+
+    private static void copyClassFile(Class<?> c, Path classes) throws Exception {
+        Path classFile = classes.resolve(SampleFingerprint.toInternalName(c) + ".class");
+        Files.createDirectories(classFile.getParent());
+        try (InputStream inputStream = c.getResourceAsStream("/" + SampleFingerprint.toInternalName(c) + ".class")) {
+            Files.copy(inputStream, classFile);
+        }
+        Files.setLastModifiedTime(classFile, FileTime.fromMillis(1_000L));
+    }
+
+    private static void changeClassFile(Class<?> c, Path classes) throws Exception {
+        Path classFile = classes.resolve(SampleFingerprint.toInternalName(c) + ".class");
+        // trailing bytes are ignored when reading the references, but change the hash
+        Files.write(classFile, new byte[]{0}, StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(classFile, FileTime.fromMillis(2_000L));
+    }
+
+    static class ReportFunction {
+        final CalledFunction calledFunction = new CalledFunction();
+        BoundType boundType;
+    }
+
+    static class CalledFunction {
+    }
+
+    interface BoundType {
+    }
+
+    static class BoundImplementation implements BoundType {
+    }
+
+    static class UnrelatedModelClass {
+    }
+}
@@ -0,0 +1,46 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SerialisedOutputTest {
+
+    @Test
+    void shouldWriteSameBytesAsSerialisedString(@TempDir Path tempDir) throws Exception {
+        String json = "{\"name\":\"Soci\u00e9t\u00e9 G\u00e9n\u00e9rale\",\"amount\":\"\u20ac100\"}";
+        SerialisedOutput serialisedOutput = new SerialisedOutput(16);
+        serialisedOutput.write(json.getBytes(StandardCharsets.UTF_8));
+
+        Path path = tempDir.resolve("output.json");
+        serialisedOutput.writeTo(path);
+
+        assertArrayEquals(json.getBytes(), Files.readAllBytes(path));
+        assertEquals(SampleFingerprint.hashFile(path), serialisedOutput.hash());
+    }
+}
@@ -0,0 +1,125 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SyntheticInputGeneratorTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String SEED = "{\"trade\":{\"tradeLot\":[{\"amount\":100.25,\"periods\":3,\"meta\":{\"globalKey\":\"abc\"}," +
+            "\"party\":[{\"name\":\"A\"}]}],\"tradeDate\":\"2024-01-01\"}}";
+
+    @Test
+    void shouldReplicateOutermostRepeatedFields() throws Exception {
+        JsonNode input = SyntheticInputGenerator.create(OBJECT_MAPPER.readTree(SEED)).generate(5);
+
+        JsonNode tradeLots = input.get("trade").get("tradeLot");
+        assertEquals(5, tradeLots.size());
+        for (JsonNode tradeLot : tradeLots) {
+            assertEquals(1, tradeLot.get("party").size());
+            assertEquals(3, tradeLot.get("periods").intValue());
+        }
+        assertEquals("abc", tradeLots.get(0).get("meta").get("globalKey").textValue());
+        assertEquals("abc-copy1", tradeLots.get(1).get("meta").get("globalKey").textValue());
+        assertEquals(100.25, tradeLots.get(0).get("amount").doubleValue());
+        assertNotEquals(100.25, tradeLots.get(1).get("amount").doubleValue());
+    }
+
+    @Test
+    void shouldGiveEachCopyUniqueKeysAndResolvableReferences() throws Exception {
+        String seed = "{\"party\":[{\"name\":\"A\",\"meta\":{\"globalKey\":\"party-1\",\"externalKey\":\"p1\"}}]," +
+                "\"trade\":{\"tradeLot\":[{\"meta\":{\"globalKey\":\"lot-1\"}," +
+                "\"priceQuantity\":[{\"price\":{\"value\":1.5,\"meta\":{\"location\":[{\"scope\":\"DOCUMENT\",\"value\":\"price-1\"}]}}," +
+                "\"meta\":{\"globalKey\":\"pq-1\",\"externalKey\":\"pq\"}}]," +
+                "\"payout\":{\"priceQuantity\":{\"globalReference\":\"pq-1\",\"externalReference\":\"pq\"}," +
+                "\"price\":{\"address\":{\"scope\":\"DOCUMENT\",\"value\":\"price-1\"}}," +
+                "\"payer\":{\"globalReference\":\"party-1\",\"externalReference\":\"p1\"}}}]}}";
+
+        JsonNode input = SyntheticInputGenerator.create(OBJECT_MAPPER.readTree(seed))
+                .withRepeatedFields("trade.tradeLot", "trade.tradeLot.priceQuantity")
+                .generate(3);
+
+        List<String> globalKeys = input.findValuesAsText("globalKey");
+        List<String> externalKeys = input.findValuesAsText("externalKey");
+        List<String> locations = new ArrayList<>();
+        input.findValues("location").forEach(l -> l.forEach(location -> locations.add(location.get("value").textValue())));
+        assertEquals(1 + 3 + 9, globalKeys.size());
+        assertEquals(globalKeys.size(), new HashSet<>(globalKeys).size());
+        assertEquals(externalKeys.size(), new HashSet<>(externalKeys).size());
+        assertEquals(9, locations.size());
+        assertEquals(locations.size(), new HashSet<>(locations).size());
+
+        JsonNode tradeLots = input.get("trade").get("tradeLot");
+        assertEquals(3, tradeLots.size());
+        for (JsonNode tradeLot : tradeLots) {
+            JsonNode payout = tradeLot.get("payout");
+            // references within the copy resolve to the copy's own keys
+            assertEquals(tradeLot.get("priceQuantity").get(0).get("meta").get("globalKey").textValue(),
+                    payout.get("priceQuantity").get("globalReference").textValue());
+            assertEquals(tradeLot.get("priceQuantity").get(0).get("meta").get("externalKey").textValue(),
+                    payout.get("priceQuantity").get("externalReference").textValue());
+            assertEquals(tradeLot.get("priceQuantity").get(0).get("price").get("meta").get("location").get(0).get("value").textValue(),
+                    payout.get("price").get("address").get("value").textValue());
+            // references outside the copy are unchanged
+            assertEquals("party-1", payout.get("payer").get("globalReference").textValue());
+            assertEquals("p1", payout.get("payer").get("externalReference").textValue());
+        }
+    }
+
+    @Test
+    void shouldReplicateOnlySelectedRepeatedFields() throws Exception {
+        JsonNode input = SyntheticInputGenerator.create(OBJECT_MAPPER.readTree(SEED))
+                .withRepeatedFields("trade.tradeLot.party")
+                .generate(3);
+
+        JsonNode tradeLots = input.get("trade").get("tradeLot");
+        assertEquals(1, tradeLots.size());
+        assertEquals(3, tradeLots.get(0).get("party").size());
+    }
+
+    @Test
+    void shouldGenerateSameInputForSameRandomSeed() throws Exception {
+        SyntheticInputGenerator generator = SyntheticInputGenerator.create(OBJECT_MAPPER.readTree(SEED)).withRandomSeed(7);
+        assertEquals(generator.generate(10), generator.generate(10));
+    }
+
+    @Test
+    void shouldFitLogLogSlope() {
+        List<TestPackScalingCurve.Point> quadratic = List.of(
+                new TestPackScalingCurve.Point(1, 1_000, 1_000_000, -1),
+                new TestPackScalingCurve.Point(2, 2_000, 4_000_000, -1),
+                new TestPackScalingCurve.Point(4, 4_000, 16_000_000, -1));
+        TestPackScalingCurve curve = new TestPackScalingCurve("pipeline-report-a", quadratic);
+
+        assertEquals(2.0, Math.round(curve.getEvaluateSlope() * 100) / 100.0);
+        assertTrue(Double.isNaN(curve.getAllocationSlope()));
+    }
+}
@@ -0,0 +1,299 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.inject.Injector;
+import com.regnosys.rosetta.common.transform.PipelineModel.Serialisation;
+import com.regnosys.rosetta.common.transform.PipelineModel.Transform;
+import com.regnosys.rosetta.rosetta.RosettaModel;
+import com.regnosys.rosetta.rosetta.RosettaReport;
+import com.regnosys.rosetta.rosetta.RosettaType;
+import com.regnosys.rosetta.rosetta.simple.Data;
+import com.regnosys.rosetta.rosetta.simple.Function;
+import com.regnosys.testing.TestingExpectationUtil;
+import com.rosetta.model.lib.ModelReportId;
+import com.rosetta.model.lib.RosettaModelObject;
+import com.rosetta.util.DottedPath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.regnosys.rosetta.common.transform.TestPackModel.SampleModel.Assertions;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestPackConfigCreatorImplTest {
+
+    private static final List<TestPackDef> TEST_PACKS = List.of(
+            new TestPackDef("Test Pack One", TradeInput.class.getName(), inputPaths("test-pack-one", 12)),
+            new TestPackDef("Test Pack Two", TradeInput.class.getName(), inputPaths("test-pack-two", 12)));
+
+    @Test
+    void shouldGenerateSameConfigAndOutputsInParallel(@TempDir Path sequentialDir, @TempDir Path parallelDir) {
+        generate(sequentialDir, TestPackConfigOptions.create());
+        generate(parallelDir, TestPackConfigOptions.create().withParallelism(4));
+
+        Map<String, String> expected = readFiles(sequentialDir);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, readFiles(parallelDir));
+    }
+
+    @Test
+    void shouldGenerateSameConfigAndOutputsWhenPipelined(@TempDir Path sequentialDir, @TempDir Path pipelinedDir) {
+        generate(sequentialDir, TestPackConfigOptions.create().withParallelism(4));
+        generate(pipelinedDir, TestPackConfigOptions.create().withParallelism(4).withPipelining(true));
+
+        Map<String, String> expected = readFiles(sequentialDir);
+        Map<String, String> projectionConfigs = Maps.filterKeys(expected, f -> f.startsWith("projection/config/test-pack-"));
+        assertEquals(4, projectionConfigs.size());
+        // projection samples of failed report samples are recorded as failed too
+        assertTrue(projectionConfigs.values().stream().allMatch(c -> c.contains("\"runtimeError\" : true")), projectionConfigs.toString());
+        assertTrue(expected.keySet().stream().anyMatch(f -> f.startsWith("projection/output/")));
+        assertEquals(expected, readFiles(pipelinedDir));
+    }
+
+    private static void generate(Path writePath, TestPackConfigOptions options) {
+        Optional<Path> testWriteBasePath = TestingExpectationUtil.TEST_WRITE_BASE_PATH;
+        TestingExpectationUtil.TEST_WRITE_BASE_PATH = Optional.of(writePath);
+        try {
+            TestPackConfigCreatorImpl creator = new TestPackConfigCreatorImpl() {
+                @Override
+                protected ModelReportId toModelReportId(RosettaReport rosettaReport) {
+                    return new ModelReportId(DottedPath.of("test"), "Body", rosettaReport.getReportType().getName());
+                }
+            };
+            creator.modelHelper = new FakeModelHelper();
+            creator.functionRunnerProvider = new FakeFunctionRunnerProvider();
+            creator.createPipelineAndTestPackConfig(ImmutableList.of(), TestPackFilter.create(), TEST_PACKS, ImmutableMap.of(), null, options);
+        } finally {
+            TestingExpectationUtil.TEST_WRITE_BASE_PATH = testWriteBasePath;
+        }
+    }
+
+    private static List<String> inputPaths(String testPackDirectory, int count) {
+        return Stream.iterate(1, i -> i + 1)
+                .limit(count)
+                // every fourth sample fails
+                .map(i -> String.format("%s/%s-%02d.json", testPackDirectory, i % 4 == 0 ? "error" : "sample", i))
+                .collect(Collectors.toList());
+    }
+
+    private static Map<String, String> readFiles(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile)
+                    .collect(Collectors.toMap(f -> directory.relativize(f).toString(), TestPackConfigCreatorImplTest::readString, (a, b) -> a, TreeMap::new));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String readString(Path file) {
+        try {
+            return Files.readString(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Two reports on the same input type, so samples of every test pack run for both, each with a projection.
+     */
+    private static class FakeModelHelper implements TestPackModelHelper {
+        private final RosettaModel model = mock(RosettaModel.class);
+        private final RosettaType inputType = type("TradeInput");
+        private final RosettaReport reportA = report(type("ReportA"));
+        private final RosettaReport reportB = report(type("ReportB"));
+        private final Function projectionA = projection("test.Project_ReportA", type("ProjectionOutputA"));
+        private final Function projectionB = projection("test.Project_ReportB", type("ProjectionOutputB"));
+        private final Map<Object, String> javaClasses = Map.of(
+                inputType, TradeInput.class.getName(),
+                reportA, ReportFunctionA.class.getName(),
+                reportA.getReportType(), "test.ReportA",
+                reportB, ReportFunctionB.class.getName(),
+                reportB.getReportType(), "test.ReportB",
+                projectionA, ProjectionFunctionA.class.getName(),
+                projectionA.getOutput().getTypeCall().getType(), ProjectionOutputA.class.getName(),
+                projectionB, ProjectionFunctionB.class.getName(),
+                projectionB.getOutput().getTypeCall().getType(), ProjectionOutputB.class.getName());
+        private final Map<Function, RosettaType> projectionInputTypes = Map.of(
+                projectionA, reportA.getReportType(),
+                projectionB, reportB.getReportType());
+
+        private static Data type(String name) {
+            Data type = mock(Data.class, RETURNS_DEEP_STUBS);
+            when(type.getName()).thenReturn(name);
+            when(type.getModel().getName()).thenReturn("iso20022.test");
+            return type;
+        }
+
+        private static Function projection(String name, Data outputType) {
+            Function projection = mock(Function.class, RETURNS_DEEP_STUBS);
+            when(projection.getName()).thenReturn(name);
+            when(projection.getOutput().getTypeCall().getType()).thenReturn(outputType);
+            return projection;
+        }
+
+        private RosettaReport report(Data reportType) {
+            RosettaReport report = mock(RosettaReport.class, RETURNS_DEEP_STUBS);
+            when(report.getInputType().getType()).thenReturn(inputType);
+            when(report.getReportType()).thenReturn(reportType);
+            return report;
+        }
+
+        @Override
+        public List<RosettaModel> loadRosettaModels(ImmutableList<String> rosettaPaths, ClassLoader classLoader) {
+            return List.of(model);
+        }
+
+        @Override
+        public List<RosettaReport> getReports(List<RosettaModel> models, String namespaceRegex, Collection<Class<?>> excludedReports) {
+            return List.of(reportA, reportB);
+        }
+
+        @Override
+        public List<Function> getFunctionsWithAnnotation(List<RosettaModel> models, String namespaceRegex, String annotation, Collection<Class<?>> excluded) {
+            return List.of(projectionA, projectionB);
+        }
+
+        @Override
+        public RosettaType getInputType(Function func) {
+            return projectionInputTypes.get(func);
+        }
+
+        @Override
+        public RosettaReport getUpstreamReport(List<RosettaModel> models, Function func, Collection<Class<?>> excluded) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toJavaClass(Function function) {
+            return javaClasses.get(function);
+        }
+
+        @Override
+        public String toJavaClass(RosettaReport report) {
+            return javaClasses.get(report);
+        }
+
+        @Override
+        public String toJavaClass(RosettaType rosettaType) {
+            return javaClasses.get(rosettaType);
+        }
+    }
+
+    private static class FakeFunctionRunnerProvider implements TestPackFunctionRunnerProvider {
+        // sample name of each output object, so a projection run on the report output in memory matches one run on the report output file
+        private final Map<RosettaModelObject, String> sampleNames = new ConcurrentHashMap<>();
+
+        @Override
+        public TestPackFunctionRunner create(Transform transform, TestPackInputCache inputCache, Injector injector) {
+            return new FakeFunctionRunner(transform, sampleNames);
+        }
+
+        @Override
+        public TestPackFunctionRunner create(Transform transform, Serialisation outputSerialisation, ImmutableMap<Class<?>, String> outputSchemaMap, TestPackInputCache inputCache, Injector injector) {
+            return new FakeFunctionRunner(transform, sampleNames);
+        }
+    }
+
+    /**
+     * Output names the function and sample. Samples take a random time, so they complete in a different order on each
+     * run, and samples whose name starts with "error" fail.
+     */
+    private static class FakeFunctionRunner implements TestPackFunctionRunner {
+        private final Transform transform;
+        private final Map<RosettaModelObject, String> sampleNames;
+
+        FakeFunctionRunner(Transform transform, Map<RosettaModelObject, String> sampleNames) {
+            this.transform = transform;
+            this.sampleNames = sampleNames;
+        }
+
+        @Override
+        public TestPackFunctionResult run(Path inputPath) {
+            // a projection input is the report output file, e.g. sample-01-report.json
+            return run(inputPath.getFileName().toString()
+                    .replace(".json", "")
+                    .replace("-report", ""));
+        }
+
+        @Override
+        public TestPackFunctionResult run(RosettaModelObject input) {
+            return run(sampleNames.get(input));
+        }
+
+        private TestPackFunctionResult run(String inputName) {
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (inputName.startsWith("error")) {
+                return TestPackFunctionResult.error(new SampleTimings());
+            }
+            SerialisedOutput serialisedOutput = new SerialisedOutput(64);
+            serialisedOutput.writeBytes(String.format("{\"function\":\"%s\",\"input\":\"%s\"}", transform.getFunction(), inputName).getBytes(StandardCharsets.UTF_8));
+            RosettaModelObject output = mock(RosettaModelObject.class);
+            sampleNames.put(output, inputName);
+            return new TestPackFunctionResult(serialisedOutput, new Assertions(0, null, false), output, new SampleTimings());
+        }
+    }
+
+    static class TradeInput {
+    }
+
+    static class ReportFunctionA {
+    }
+
+    static class ReportFunctionB {
+    }
+
+    static class ProjectionFunctionA {
+    }
+
+    static class ProjectionFunctionB {
+    }
+
+    static class ProjectionOutputA {
+    }
+
+    static class ProjectionOutputB {
+    }
+}
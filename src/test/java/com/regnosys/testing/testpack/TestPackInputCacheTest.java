@@ -0,0 +1,158 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.rosetta.model.lib.RosettaModelObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class TestPackInputCacheTest {
+
+    @Test
+    void shouldReloadInputWhenFileSizeOrLastModifiedTimeChanges(@TempDir Path tempDir) throws Exception {
+        TestPackInputCache inputCache = TestPackInputCache.create(1_000_000);
+        Path inputFile = tempDir.resolve("input.json");
+        Files.writeString(inputFile, "{\"trade\":1}");
+        FileTime lastModified = Files.getLastModifiedTime(inputFile);
+        CountingLoader<TradeInput> loader = new CountingLoader<>(TradeInput.class);
+
+        TradeInput input = inputCache.get(inputFile, TradeInput.class, loader);
+        assertSame(input, inputCache.get(inputFile, TradeInput.class, loader));
+        assertEquals(1, loader.getLoads());
+
+        // same size, later last modified time
+        Files.writeString(inputFile, "{\"trade\":2}");
+        Files.setLastModifiedTime(inputFile, FileTime.fromMillis(lastModified.toMillis() + 2000));
+        TradeInput modifiedInput = inputCache.get(inputFile, TradeInput.class, loader);
+        assertNotSame(input, modifiedInput);
+        assertEquals(2, loader.getLoads());
+
+        // different size, same last modified time
+        Files.writeString(inputFile, "{\"trade\":20}");
+        Files.setLastModifiedTime(inputFile, FileTime.fromMillis(lastModified.toMillis() + 2000));
+        assertNotSame(modifiedInput, inputCache.get(inputFile, TradeInput.class, loader));
+        assertEquals(3, loader.getLoads());
+
+        assertEquals(1, inputCache.getStats().hitCount());
+        assertEquals(3, inputCache.getStats().missCount());
+    }
+
+    @Test
+    void shouldEvictInputsByEstimatedFootprint(@TempDir Path tempDir) throws Exception {
+        // each input has an estimated footprint of 200, so at most 5 fit
+        TestPackInputCache inputCache = TestPackInputCache.create(1000);
+        CountingLoader<TradeInput> loader = new CountingLoader<>(TradeInput.class);
+        Path[] inputFiles = new Path[10];
+        for (int i = 0; i < inputFiles.length; i++) {
+            inputFiles[i] = tempDir.resolve("input-" + i + ".json");
+            Files.writeString(inputFiles[i], "x".repeat(200 / TestPackInputCache.FOOTPRINT_PER_FILE_BYTE));
+            inputCache.get(inputFiles[i], TradeInput.class, loader);
+        }
+        assertEquals(10, loader.getLoads());
+
+        for (Path inputFile : inputFiles) {
+            inputCache.get(inputFile, TradeInput.class, loader);
+        }
+        assertTrue(loader.getLoads() >= 15, "reloads " + (loader.getLoads() - 10));
+        assertTrue(inputCache.getStats().evictionCount() >= 5, "evictions " + inputCache.getStats().evictionCount());
+
+        // heavier than the whole cache, so never kept
+        Path largeInputFile = tempDir.resolve("large.json");
+        Files.writeString(largeInputFile, "x".repeat(2000 / TestPackInputCache.FOOTPRINT_PER_FILE_BYTE));
+        CountingLoader<TradeInput> largeLoader = new CountingLoader<>(TradeInput.class);
+        inputCache.get(largeInputFile, TradeInput.class, largeLoader);
+        inputCache.get(largeInputFile, TradeInput.class, largeLoader);
+        assertEquals(2, largeLoader.getLoads());
+    }
+
+    @Test
+    void shouldShareInputAcrossRunnersOfSameInputTypeOnly(@TempDir Path tempDir) throws Exception {
+        TestPackInputCache inputCache = TestPackInputCache.create(1_000_000);
+        Path inputFile = tempDir.resolve("input.json");
+        Files.writeString(inputFile, "{\"trade\":1}");
+        // e.g. the runners of two reports on trades, and a runner of a report that reads the same file as another type
+        CountingLoader<TradeInput> reportALoader = new CountingLoader<>(TradeInput.class);
+        CountingLoader<TradeInput> reportBLoader = new CountingLoader<>(TradeInput.class);
+        CountingLoader<OtherInput> otherLoader = new CountingLoader<>(OtherInput.class);
+
+        TradeInput reportAInput = inputCache.get(inputFile, TradeInput.class, reportALoader);
+        TradeInput reportBInput = inputCache.get(inputFile, TradeInput.class, reportBLoader);
+        OtherInput otherInput = inputCache.get(inputFile, OtherInput.class, otherLoader);
+
+        assertSame(reportAInput, reportBInput);
+        assertEquals(1, reportALoader.getLoads());
+        assertEquals(0, reportBLoader.getLoads());
+        assertNotNull(otherInput);
+        assertEquals(1, otherLoader.getLoads());
+        assertSame(otherInput, inputCache.get(inputFile, OtherInput.class, otherLoader));
+    }
+
+    @Test
+    void shouldAlwaysLoadInputWhenDisabled(@TempDir Path tempDir) throws Exception {
+        TestPackInputCache inputCache = TestPackInputCache.none();
+        Path inputFile = tempDir.resolve("input.json");
+        Files.writeString(inputFile, "{\"trade\":1}");
+        CountingLoader<TradeInput> loader = new CountingLoader<>(TradeInput.class);
+
+        inputCache.get(inputFile, TradeInput.class, loader);
+        inputCache.get(inputFile, TradeInput.class, loader);
+
+        assertFalse(inputCache.isEnabled());
+        assertEquals(2, loader.getLoads());
+    }
+
+    /**
+     * Creates a new input object on each load.
+     */
+    private static class CountingLoader<T extends RosettaModelObject> implements Callable<T> {
+        private final Class<T> inputType;
+        private final AtomicInteger loads = new AtomicInteger();
+
+        CountingLoader(Class<T> inputType) {
+            this.inputType = inputType;
+        }
+
+        @Override
+        public T call() {
+            loads.incrementAndGet();
+            return mock(inputType);
+        }
+
+        int getLoads() {
+            return loads.get();
+        }
+    }
+
+    interface TradeInput extends RosettaModelObject {
+    }
+
+    interface OtherInput extends RosettaModelObject {
+    }
+}
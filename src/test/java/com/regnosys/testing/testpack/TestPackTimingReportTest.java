@@ -0,0 +1,58 @@
+package com.regnosys.testing.testpack;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.regnosys.testing.testpack.SampleTimings.Stage;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestPackTimingReportTest {
+
+    @Test
+    void shouldAverageEachStageOverTheSamplesThatRanIt(@TempDir Path tempDir) throws Exception {
+        SampleTimings parsed = new SampleTimings();
+        parsed.add(Stage.READ, 1_000_000, -1);
+        parsed.add(Stage.PARSE, 3_000_000, -1);
+        parsed.add(Stage.RESOLVE, 1_000_000, -1);
+        parsed.add(Stage.EVALUATE, 1_000_000, -1);
+        // input taken from the input cache
+        SampleTimings cached = new SampleTimings();
+        cached.add(Stage.EVALUATE, 2_000_000, -1);
+
+        TestPackTimingReport timingReport = new TestPackTimingReport();
+        timingReport.add("pipeline-report-a", parsed);
+        timingReport.add("pipeline-report-a", cached);
+        timingReport.write(tempDir.resolve("timings"));
+
+        List<String> csv = Files.readAllLines(tempDir.resolve("timings").resolve(TestPackTimingReport.CSV_FILE_NAME));
+        assertEquals("pipelineId,stage,samples,timedSamples,totalMillis,maxMillis,meanMillis,allocatedBytes", csv.get(0));
+        assertTrue(csv.contains("pipeline-report-a,PARSE,2,1,3,3,3.0,0"));
+        assertTrue(csv.contains("pipeline-report-a,EVALUATE,2,2,3,2,1.5,0"));
+        assertTrue(csv.contains("pipeline-report-a,SERIALISE,2,0,0,0,,0"));
+        assertTrue(Files.exists(tempDir.resolve("timings").resolve(TestPackTimingReport.JSON_FILE_NAME)));
+    }
+}
@@ -0,0 +1,122 @@
+package com.regnosys.testing.transform;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyBaselineTest {
+
+    private static final long CALIBRATION_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final LatencyGate GATE = LatencyGate.create()
+            .withWarmups(2)
+            .withRepeats(3)
+            .withMaxRatio(2.0)
+            .withMinimumMillis(5);
+
+    @Test
+    void shouldPassWithinMaxRatioOfBaseline() {
+        LatencyBaseline latencyBaseline = createBaseline(Map.of("pack/sample", 10.0), 19);
+
+        run(latencyBaseline, "sample");
+
+        assertEquals(Optional.empty(), latencyBaseline.check("pack", "sample", GATE));
+    }
+
+    @Test
+    void shouldFailBeyondMaxRatioOfBaseline() {
+        LatencyBaseline latencyBaseline = createBaseline(Map.of("pack/sample", 10.0), 21);
+
+        run(latencyBaseline, "sample");
+
+        Optional<String> regression = latencyBaseline.check("pack", "sample", GATE);
+        assertTrue(regression.isPresent());
+        assertTrue(regression.get().startsWith("Sample pack/sample evaluate latency 21.0ms"), regression.get());
+    }
+
+    @Test
+    void shouldIgnoreSamplesFasterThanMinimum() {
+        LatencyBaseline latencyBaseline = createBaseline(Map.of("pack/sample", 1.0), 4);
+
+        run(latencyBaseline, "sample");
+
+        assertEquals(Optional.empty(), latencyBaseline.check("pack", "sample", GATE));
+    }
+
+    @Test
+    void shouldIgnoreSamplesWithoutBaselineOrMeasurement() {
+        LatencyBaseline latencyBaseline = createBaseline(Map.of("pack/other", 1.0), 50);
+
+        run(latencyBaseline, "sample");
+
+        assertEquals(Optional.empty(), latencyBaseline.check("pack", "sample", GATE));
+        assertEquals(Optional.empty(), latencyBaseline.check("pack", "other", GATE));
+    }
+
+    @Test
+    void shouldRunWarmupsAndRepeatsOnSameInputAndReturnLastOutput() {
+        LatencyBaseline latencyBaseline = createBaseline(Map.of(), 1);
+        AtomicInteger runs = new AtomicInteger();
+
+        Function<String, String> measured = latencyBaseline.measuring("pack", "sample", GATE,
+                input -> input + "-" + runs.incrementAndGet());
+
+        assertEquals("input-5", measured.apply("input"));
+        assertEquals(5, runs.get());
+    }
+
+    @Test
+    void shouldOnlyAddNewSamplesToBaselineUnlessUpdateRequested() {
+        LatencyBaseline latencyBaseline = createBaseline(Map.of("pack/existing", 10.0, "pack/not-run", 3.0), 30);
+
+        run(latencyBaseline, "existing");
+        run(latencyBaseline, "new");
+
+        assertEquals(Map.of("pack/existing", 10.0, "pack/new", 30.0, "pack/not-run", 3.0),
+                latencyBaseline.getUpdatedBaseline(false));
+        assertEquals(Map.of("pack/existing", 30.0, "pack/new", 30.0, "pack/not-run", 3.0),
+                latencyBaseline.getUpdatedBaseline(true));
+    }
+
+    private static void run(LatencyBaseline latencyBaseline, String sampleId) {
+        latencyBaseline.measuring("pack", sampleId, GATE, Function.identity()).apply("input");
+    }
+
+    /**
+     * Baseline whose clock advances by the given latency on each read, so each run of a sample takes that latency.
+     */
+    private static LatencyBaseline createBaseline(Map<String, Double> baseline, long runMillis) {
+        AtomicLong nanos = new AtomicLong();
+        long runNanos = TimeUnit.MILLISECONDS.toNanos(runMillis);
+        LongSupplier clock = () -> nanos.getAndAdd(runNanos);
+        return new LatencyBaseline(Path.of("config", "Func-latency-baseline.json"), baseline, CALIBRATION_NANOS, clock);
+    }
+}
@@ -0,0 +1,86 @@
+package com.regnosys.testing.transform;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OutputComparatorTest {
+
+    private final OutputComparator comparator = new OutputComparator(3);
+
+    @Test
+    void shouldFindNoDifferencesInEqualOutput() {
+        assertEquals(List.of(), comparator.diff("{\"a\":1}", "{\"a\":1}"));
+        assertNull(comparator.describe("<a>1</a>", "<a>1</a>"));
+    }
+
+    @Test
+    void shouldDiffJsonByPath() {
+        List<String> differences = comparator.diff(
+                "{\"trade\":{\"amount\":1,\"parties\":[\"a\",\"b\"]}}",
+                "{\"trade\":{\"amount\":2,\"parties\":[\"a\"],\"extra\":true}}");
+
+        assertEquals(List.of(
+                "$.trade.amount: expected 1 but was 2",
+                "$.trade.extra: unexpected true",
+                "$.trade.parties[1]: missing, expected \"b\""), differences);
+    }
+
+    @Test
+    void shouldDiffXmlByPath() {
+        List<String> differences = comparator.diff(
+                "<Document><Id>1</Id><Amt Ccy=\"EUR\">10</Amt></Document>",
+                "<Document><Id>2</Id><Amt Ccy=\"USD\">10</Amt><Extra/></Document>");
+
+        assertEquals(List.of(
+                "/Document/Id: expected \"1\" but was \"2\"",
+                "/Document/Amt/@Ccy: expected EUR but was USD",
+                "/Document/Extra[3]: unexpected element"), differences);
+    }
+
+    @Test
+    void shouldBoundNumberOfDifferences() {
+        List<String> differences = comparator.diff("[1,2,3,4,5]", "[6,7,8,9,10]");
+
+        assertEquals(3, differences.size());
+        assertTrue(comparator.describe("[1,2,3,4,5]", "[6,7,8,9,10]").contains("first 3 differences shown"));
+    }
+
+    @Test
+    void shouldDiffLinesWhenStructurallyEqual() {
+        assertEquals(List.of("line 1: expected \"{\"a\": 1}\" but was \"{\"a\":1}\""),
+                comparator.diff("{\"a\": 1}", "{\"a\":1}"));
+    }
+
+    @Test
+    void shouldDescribeLineEndingDifferences() {
+        assertEquals(List.of("line 1: expected line ending \\n but was \\r\\n"),
+                comparator.diff("a\nb\n", "a\r\nb\n"));
+        assertEquals(List.of("end of output: missing trailing \\n"),
+                comparator.diff("a\nb\n", "a\nb"));
+        assertEquals(List.of("end of output: unexpected trailing \\r\\n"),
+                comparator.diff("a\nb", "a\nb\r\n"));
+    }
+}
@@ -0,0 +1,62 @@
+package com.regnosys.testing.transform;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SampleShardTest {
+
+    @Test
+    void shouldAssignEachSampleToExactlyOneShard() {
+        int count = 4;
+        IntStream.range(0, 1000).forEach(i -> {
+            String sampleId = "sample-" + i;
+            long shards = IntStream.range(0, count)
+                    .filter(index -> new SampleShard(index, count).includes("test-pack-report-a", sampleId))
+                    .count();
+            assertEquals(1L, shards);
+        });
+    }
+
+    @Test
+    void shouldSplitSamplesRoughlyEvenly() {
+        SampleShard shard = new SampleShard(1, 4);
+        long included = IntStream.range(0, 1000)
+                .filter(i -> shard.includes("test-pack-report-a", "sample-" + i))
+                .count();
+        assertTrue(included > 200 && included < 300, "included " + included);
+    }
+
+    @Test
+    void shouldIncludeAllSamplesWhenNotSharded() {
+        assertFalse(SampleShard.all().isSharded());
+        assertTrue(SampleShard.all().includes("test-pack-report-a", "sample-1"));
+    }
+
+    @Test
+    void shouldRejectInvalidShard() {
+        assertThrows(IllegalArgumentException.class, () -> new SampleShard(4, 4));
+    }
+}
@@ -0,0 +1,65 @@
+package com.regnosys.testing.transform;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestImpactAnalyserTest {
+
+    private final Map<String, List<String>> pathSegmentsByModel = new LinkedHashMap<>();
+
+    {
+        pathSegmentsByModel.put("base", List.of("rosetta", "base.rosetta"));
+        pathSegmentsByModel.put("event", List.of("rosetta", "event", "common.rosetta"));
+        pathSegmentsByModel.put("product", List.of("rosetta", "product", "common.rosetta"));
+    }
+
+    @Test
+    void shouldMatchChangedFileByLongestPathSuffix() {
+        assertEquals(Optional.of(Set.of("base")),
+                TestImpactAnalyser.getChangedModels(pathSegmentsByModel, List.of("rosetta-source/src/main/rosetta/base.rosetta")));
+        assertEquals(Optional.of(Set.of("event")),
+                TestImpactAnalyser.getChangedModels(pathSegmentsByModel, List.of("rosetta-source/src/main/rosetta/event/common.rosetta")));
+        assertEquals(Optional.of(Set.of("product")),
+                TestImpactAnalyser.getChangedModels(pathSegmentsByModel, List.of("rosetta-source\\src\\main\\rosetta\\product\\.\\common.rosetta")));
+    }
+
+    @Test
+    void shouldTreatModelsWithTheSameFileNameAsChangedWhenAmbiguous() {
+        assertEquals(Optional.of(Set.of("event", "product")),
+                TestImpactAnalyser.getChangedModels(pathSegmentsByModel, List.of("common.rosetta")));
+    }
+
+    @Test
+    void shouldReturnEmptyWhenChangedFileIsNotLoaded() {
+        assertEquals(Optional.empty(),
+                TestImpactAnalyser.getChangedModels(pathSegmentsByModel, List.of("rosetta-source/src/main/rosetta/base.rosetta", "rosetta-source/src/main/rosetta/deleted.rosetta")));
+    }
+}
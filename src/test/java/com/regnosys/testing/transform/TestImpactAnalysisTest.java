@@ -0,0 +1,63 @@
+package com.regnosys.testing.transform;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.regnosys.rosetta.common.transform.PipelineModel;
+import com.regnosys.rosetta.common.transform.TransformType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestImpactAnalysisTest {
+
+    private final PipelineModel pipelineModel = new PipelineModel("pipeline-report-a", "Report A",
+            new PipelineModel.Transform(TransformType.REPORT, "test.reports.ReportAFunction", "test.Input", "test.Output"),
+            null, null);
+
+    @Test
+    void shouldTreatEveryPipelineAsAffectedWhenNonRosettaFilesChange() {
+        String previous = System.getProperty(TestImpactAnalysis.CHANGED_FILES_PROPERTY);
+        try {
+            System.setProperty(TestImpactAnalysis.CHANGED_FILES_PROPERTY,
+                    "rosetta-source/src/main/resources/cdm-sample-files/trade.json," +
+                            "rosetta-source/src/main/resources/regulatory-reporting/output/report-a.json," +
+                            "src/main/java/test/Extension.java");
+            assertTrue(TestImpactAnalysis.fromSystemProperties(ImmutableList.of("rosetta")).isAffected(pipelineModel, null));
+        } finally {
+            if (previous == null) {
+                System.clearProperty(TestImpactAnalysis.CHANGED_FILES_PROPERTY);
+            } else {
+                System.setProperty(TestImpactAnalysis.CHANGED_FILES_PROPERTY, previous);
+            }
+        }
+    }
+
+    @Test
+    void shouldOnlyTreatAffectedFunctionsAsAffected() {
+        TestImpactAnalysis analysis = new TestImpactAnalysis(ImmutableSet.of("test.reports.OtherFunction"));
+        assertFalse(analysis.isAffected(pipelineModel, null));
+        assertTrue(new TestImpactAnalysis(ImmutableSet.of("test.reports.ReportAFunction")).isAffected(pipelineModel, null));
+        assertTrue(TestImpactAnalysis.all().isAffected(pipelineModel, null));
+    }
+}
@@ -0,0 +1,99 @@
+package com.regnosys.testing.transform;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.regnosys.rosetta.common.serialisation.RosettaObjectMapper;
+import com.regnosys.rosetta.common.transform.PipelineModel;
+import com.regnosys.rosetta.common.transform.TestPackModel;
+import com.regnosys.rosetta.common.transform.TestPackUtils;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransformConfigIndexTest {
+
+    private static final Path CONFIG_PATH = Path.of("transform-config-index");
+    private static final ObjectMapper JSON_OBJECT_MAPPER = RosettaObjectMapper.getNewRosettaObjectMapper();
+
+    private final ClassLoader classLoader = getClass().getClassLoader();
+
+    @Test
+    void shouldIndexSamePipelinesAndTestPacksAsClassPathScan() {
+        TransformConfigIndex index = TransformConfigIndex.get(CONFIG_PATH, classLoader);
+
+        List<PipelineModel> pipelineModels = TestPackUtils.getPipelineModels(CONFIG_PATH, classLoader, JSON_OBJECT_MAPPER);
+        List<TestPackModel> testPackModels = TestPackUtils.getTestPackModels(CONFIG_PATH, classLoader, JSON_OBJECT_MAPPER);
+
+        assertEquals(2, pipelineModels.size());
+        assertEquals(3, testPackModels.size());
+        assertEquals(describePipelines(pipelineModels), describePipelines(index.getPipelineModels()));
+        assertEquals(describeTestPacks(testPackModels), describeTestPacks(index.getTestPackModels()));
+
+        for (PipelineModel pipelineModel : pipelineModels) {
+            String function = pipelineModel.getTransform().getFunction();
+            assertEquals(describePipelines(List.of(TestPackUtils.getPipelineModel(pipelineModels, function))),
+                    describePipelines(List.of(index.getPipelineModel(function))));
+            assertEquals(describeTestPacks(TestPackUtils.getTestPackModels(testPackModels, pipelineModel.getId())),
+                    describeTestPacks(index.getTestPackModels(pipelineModel.getId())));
+        }
+        for (TestPackModel testPackModel : testPackModels) {
+            assertEquals(describeTestPacks(List.of(testPackModel)),
+                    describeTestPacks(List.of(index.getTestPackModel(testPackModel.getId()).orElseThrow())));
+        }
+        assertTrue(index.getTestPackModel("test-pack-unknown").isEmpty());
+    }
+
+    @Test
+    void shouldShareIndexPerConfigPathAndClassLoader() throws Exception {
+        TransformConfigIndex index = TransformConfigIndex.get(CONFIG_PATH, classLoader);
+
+        assertSame(index, TransformConfigIndex.get(CONFIG_PATH, classLoader));
+        try (URLClassLoader childClassLoader = new URLClassLoader(new URL[0], classLoader)) {
+            TransformConfigIndex childIndex = TransformConfigIndex.get(CONFIG_PATH, childClassLoader);
+
+            assertNotSame(index, childIndex);
+            assertEquals(describeTestPacks(index.getTestPackModels()), describeTestPacks(childIndex.getTestPackModels()));
+        }
+    }
+
+    private static List<String> describePipelines(List<PipelineModel> pipelineModels) {
+        return pipelineModels.stream()
+                .map(p -> String.join(" | ", p.getId(), p.getName(), p.getTransform().getType().name(),
+                        p.getTransform().getFunction(), p.getTransform().getInputType(), p.getTransform().getOutputType(),
+                        String.valueOf(p.getUpstreamPipelineId())))
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> describeTestPacks(List<TestPackModel> testPackModels) {
+        return testPackModels.stream()
+                .map(t -> String.join(" | ", t.getId(), t.getPipelineId(), t.getName(), t.getSamples().stream()
+                        .map(s -> String.join(",", s.getId(), s.getName(), s.getInputPath(), s.getOutputPath()))
+                        .collect(Collectors.joining("; "))))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,125 @@
+package com.regnosys.testing.transform;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+
+import com.rosetta.model.lib.RosettaModelObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransformFunctionFactoryTest {
+
+    private final RosettaModelObject input = (RosettaModelObject) Proxy.newProxyInstance(
+            RosettaModelObject.class.getClassLoader(), new Class<?>[]{RosettaModelObject.class}, (proxy, method, args) -> null);
+
+    @Test
+    void shouldCallPublicEvaluateMethod() {
+        assertSameResult(new PublicFunction());
+    }
+
+    @Test
+    void shouldCallEvaluateMethodOfNonPublicClass() {
+        assertSameResult(new NonPublicFunction());
+    }
+
+    @Test
+    void shouldCallEvaluateMethodOverridingGenericMethod() {
+        assertSameResult(new BridgedFunction());
+    }
+
+    @Test
+    void shouldCallEvaluateMethodOfClassLoadedByChildClassLoader() throws Exception {
+        ClassLoader childClassLoader = new ChildFirstClassLoader(PublicFunction.class.getName(), getClass().getClassLoader());
+        Object function = childClassLoader.loadClass(PublicFunction.class.getName()).getConstructor().newInstance();
+        assertNotSame(PublicFunction.class, function.getClass());
+
+        assertSameResult(function);
+    }
+
+    private void assertSameResult(Object function) {
+        Function<RosettaModelObject, RosettaModelObject> lambda = TransformFunctionFactory.create(function, RosettaModelObject.class, true);
+        Function<RosettaModelObject, RosettaModelObject> boundHandle = TransformFunctionFactory.create(function, RosettaModelObject.class, false);
+
+        assertSame(input, lambda.apply(input));
+        assertSame(input, boundHandle.apply(input));
+        assertSame(input, TransformFunctionFactory.create(function, RosettaModelObject.class).apply(input));
+    }
+
+    /**
+     * Defines its own copy of the given class, rather than delegating to the parent first.
+     */
+    private static class ChildFirstClassLoader extends ClassLoader {
+        private final String className;
+
+        ChildFirstClassLoader(String className, ClassLoader parent) {
+            super(parent);
+            this.className = className;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(className)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded != null) {
+                    return loaded;
+                }
+                try (InputStream classFile = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                    byte[] bytes = classFile.readAllBytes();
+                    return defineClass(name, bytes, 0, bytes.length);
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }
+    }
+
+    public static class PublicFunction {
+        public RosettaModelObject evaluate(RosettaModelObject input) {
+            return input;
+        }
+    }
+
+    static class NonPublicFunction {
+        public RosettaModelObject evaluate(RosettaModelObject input) {
+            return input;
+        }
+    }
+
+    public abstract static class GenericFunction<IN> {
+        public abstract RosettaModelObject evaluate(IN input);
+    }
+
+    public static class BridgedFunction extends GenericFunction<RosettaModelObject> {
+        @Override
+        public RosettaModelObject evaluate(RosettaModelObject input) {
+            return input;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.regnosys.testing.validation;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.xml.validation.Schema;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class XsdSchemaCacheTest {
+
+    private static final String MAIN_SCHEMA = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n" +
+            "    <xs:include schemaLocation=\"types.xsd\"/>\n" +
+            "    <xs:element name=\"sample\" type=\"SampleType\"/>\n" +
+            "</xs:schema>\n";
+
+    @Test
+    void shouldRecompileWhenIncludedSchemaChanges(@TempDir Path dir) throws Exception {
+        URL schemaUrl = writeSchema(dir, "xs:decimal");
+        Schema schema = XsdSchemaCache.getSchema(schemaUrl);
+
+        assertSame(schema, XsdSchemaCache.getSchema(schemaUrl));
+        assertTrue(new XsdValidationService("sample", schema).validate("<sample><amount>1.5</amount></sample>"));
+
+        writeTypes(dir, "xs:boolean", FileTime.fromMillis(Files.getLastModifiedTime(dir.resolve("types.xsd")).toMillis() + 2000));
+        Schema changedSchema = XsdSchemaCache.getSchema(schemaUrl);
+
+        assertNotSame(schema, changedSchema);
+        assertFalse(new XsdValidationService("sample", changedSchema).validate("<sample><amount>1.5</amount></sample>"));
+        assertSame(changedSchema, XsdSchemaCache.getSchema(schemaUrl));
+    }
+
+    @Test
+    void shouldRecompileWhenInvalidated(@TempDir Path dir) throws Exception {
+        URL schemaUrl = writeSchema(dir, "xs:decimal");
+        Schema schema = XsdSchemaCache.getSchema(schemaUrl);
+
+        XsdSchemaCache.invalidate(schemaUrl);
+
+        assertNotSame(schema, XsdSchemaCache.getSchema(schemaUrl));
+    }
+
+    private static URL writeSchema(Path dir, String amountType) throws IOException {
+        Path schema = Files.writeString(dir.resolve("main.xsd"), MAIN_SCHEMA);
+        writeTypes(dir, amountType, null);
+        return schema.toUri().toURL();
+    }
+
+    private static void writeTypes(Path dir, String amountType, FileTime lastModifiedTime) throws IOException {
+        Path types = Files.writeString(dir.resolve("types.xsd"), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n" +
+                "    <xs:complexType name=\"SampleType\">\n" +
+                "        <xs:sequence>\n" +
+                "            <xs:element name=\"amount\" type=\"" + amountType + "\"/>\n" +
+                "        </xs:sequence>\n" +
+                "    </xs:complexType>\n" +
+                "</xs:schema>\n");
+        if (lastModifiedTime != null) {
+            Files.setLastModifiedTime(types, lastModifiedTime);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.regnosys.testing.validation;
+
+/*-
+ * ===============
+ * Rune Testing
+ * ===============
+ * Copyright (C) 2022 - 2024 REGnosys
+ * ===============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ===============
+ */
+
+import com.google.common.io.Resources;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class XsdValidationServiceTest {
+
+    private static final URL SCHEMA = Resources.getResource("xsd-validation/sample.xsd");
+
+    @Test
+    void shouldValidateXml() {
+        XsdValidationService service = XsdValidationService.create(SCHEMA);
+
+        assertTrue(service.validate("<sample><amount>1.5</amount></sample>"));
+        assertFalse(service.validate("<sample><amount>abc</amount></sample>"));
+        assertEquals(2, service.getValidationCount());
+        assertEquals(1, service.getCreatedCount());
+        assertEquals(0, service.getInUseCount());
+    }
+
+    @Test
+    void shouldCompileSchemaOnce() {
+        assertSame(XsdSchemaCache.getSchema(SCHEMA), XsdSchemaCache.getSchema(SCHEMA));
+    }
+
+    @Test
+    void shouldValidateConcurrently() throws Exception {
+        XsdValidationService service = XsdValidationService.create(SCHEMA);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = IntStream.range(0, 200)
+                    .mapToObj(i -> executor.submit(() -> service.validate(i % 2 == 0 ?
+                            "<sample><amount>" + i + "</amount></sample>" :
+                            "<sample><value>" + i + "</value></sample>")))
+                    .collect(Collectors.toList());
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i % 2 == 0, results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(200, service.getValidationCount());
+        assertTrue(service.getCreatedCount() <= 4);
+        assertTrue(service.getPeakInUseCount() <= 4);
+        assertEquals(0, service.getInUseCount());
+    }
+}